@@ -2,6 +2,7 @@ plugins {
     id("com.gradleup.shadow") version "8.3.5"
     id("qupath-conventions")
     id("com.github.spotbugs") version "6.5.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 // Configure your extension here
@@ -29,6 +30,13 @@ dependencies {
     testImplementation(libs.bundles.qupath)
     testImplementation("org.junit.jupiter:junit-jupiter:5.9.1")
     testImplementation(libs.bundles.logging)
+    // Headless JavaFX platform, so the manager can be tested against real stages without a display
+    testRuntimeOnly("org.testfx:openjfx-monocle:21.0.2")
+
+    // For benchmarks
+    jmh(libs.bundles.qupath)
+    jmh(libs.gson)
+    jmh(libs.bundles.logging)
 }
 
 tasks.withType<JavaCompile> {
@@ -36,6 +44,39 @@ tasks.withType<JavaCompile> {
     options.compilerArgs.add("-Xlint:unchecked")
 }
 
+// ---------------------------------------------------------------------------
+// Tests -- run headless under Monocle, with preferences kept in memory
+// ---------------------------------------------------------------------------
+tasks.test {
+    useJUnitPlatform()
+    systemProperty("glass.platform", "Monocle")
+    systemProperty("monocle.platform", "Headless")
+    systemProperty("prism.order", "sw")
+    systemProperty("java.awt.headless", "true")
+    systemProperty("java.util.prefs.PreferencesFactory", "qupath.ext.dialogmanager.InMemoryPreferencesFactory")
+    // The manager tracks every window once initialized, so the performance baseline needs a
+    // JVM where no other test class has started it
+    forkEvery = 1
+    // Per-window overhead allowed by DialogPositionManagerPerformanceTest, e.g. -Pdialogmanager.test.overheadBudgetMillis=2
+    providers.gradleProperty("dialogmanager.test.overheadBudgetMillis").orNull?.let {
+        systemProperty("dialogmanager.test.overheadBudgetMillis", it)
+    }
+}
+
+// ---------------------------------------------------------------------------
+// JMH -- benchmarks for the persistence and geometry hot paths (./gradlew jmh)
+// ---------------------------------------------------------------------------
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    // Shares the synthetic screens and in-memory preferences with the tests
+    includeTests.set(true)
+    // Keep benchmark preferences in memory, away from the user's real preferences
+    jvmArgsAppend.add("-Djava.util.prefs.PreferencesFactory=qupath.ext.dialogmanager.InMemoryPreferencesFactory")
+    resultFormat.set("JSON")
+}
+
 // ---------------------------------------------------------------------------
 // SpotBugs -- static bug detection (gates the build)
 // ---------------------------------------------------------------------------
@@ -48,3 +89,8 @@ spotbugs {
 tasks.withType<com.github.spotbugs.snom.SpotBugsTask>().configureEach {
     reports.create("html") { required.set(true) }
 }
+
+// Benchmarks are not shipped, so they are not gated by SpotBugs
+tasks.matching { it.name == "spotbugsJmh" }.configureEach {
+    enabled = false
+}
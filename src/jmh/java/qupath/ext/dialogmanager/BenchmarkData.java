@@ -0,0 +1,55 @@
+package qupath.ext.dialogmanager;
+
+import javafx.stage.Modality;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic dialog states for the benchmarks, spread over the screens of
+ * {@link TestScreens#sideBySide(int)}.
+ * <p>
+ * Everything is generated from a fixed seed, so each run measures the same data.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+        // Utility class - no instantiation
+    }
+
+    /**
+     * Create saved states spread over a row of screens. Roughly one in ten is placed
+     * beyond the right-hand edge, as if saved on a screen that has since been removed.
+     *
+     * @param count Number of states
+     * @param screenCount Number of screens the states are spread over
+     * @return States keyed by windowId, in creation order
+     */
+    static Map<String, DialogState> states(int count, int screenCount) {
+        Random random = new Random(42);
+        Map<String, DialogState> states = new LinkedHashMap<>();
+        int desktopWidth = screenCount * TestScreens.SCREEN_WIDTH;
+        for (int i = 0; i < count; i++) {
+            String windowId = windowId(i);
+            int screen = random.nextInt(screenCount);
+            double x = random.nextInt(10) == 0
+                    ? desktopWidth + random.nextInt(TestScreens.SCREEN_WIDTH)
+                    : screen * TestScreens.SCREEN_WIDTH + random.nextInt(TestScreens.SCREEN_WIDTH - 200);
+            double y = random.nextInt(TestScreens.SCREEN_HEIGHT - 200);
+            double scale = TestScreens.scaleOf(screen);
+            states.put(windowId, new DialogState(windowId, windowId, x, y,
+                    200 + random.nextInt(600), 150 + random.nextInt(500),
+                    i % 7 == 0 ? Modality.APPLICATION_MODAL : Modality.NONE,
+                    false, screen, scale, scale));
+        }
+        return states;
+    }
+
+    /**
+     * Get the windowId used for the state at an index.
+     */
+    static String windowId(int index) {
+        return String.format("Dialog %05d - measurements", index);
+    }
+}
@@ -0,0 +1,124 @@
+package qupath.ext.dialogmanager;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import javafx.stage.Modality;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoding and decoding the stored form of dialog positions, without the store around it.
+ * <p>
+ * Entry counts above what fits in one preference shard are still encoded in one piece,
+ * to show how the codecs themselves scale.
+ */
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int entries;
+
+    private Map<String, DialogState> states;
+    private String json;
+    private String binary;
+
+    @Setup
+    public void setUp() {
+        states = BenchmarkData.states(entries, 2);
+        json = PreferencesDialogStateStore.toJsonWithinLimit(states, Integer.MAX_VALUE, new ArrayList<>());
+        binary = DialogStateBinaryCodec.encode(states);
+    }
+
+    /**
+     * Build the compact JSON object for each state.
+     */
+    @Benchmark
+    public void stateToJson(Blackhole blackhole) {
+        for (DialogState state : states.values()) {
+            blackhole.consume(PreferencesDialogStateStore.stateToJson(state));
+        }
+    }
+
+    @Benchmark
+    public String encodeJson() {
+        return PreferencesDialogStateStore.toJsonWithinLimit(states, Integer.MAX_VALUE, new ArrayList<>());
+    }
+
+    @Benchmark
+    public String encodeBinary() {
+        return DialogStateBinaryCodec.encode(states);
+    }
+
+    /**
+     * Decode JSON with the streaming reader used by the stores.
+     */
+    @Benchmark
+    public Map<String, DialogState> decodeJson() throws IOException {
+        return DialogStateJsonReader.read(json);
+    }
+
+    /**
+     * Decode JSON through a {@code JsonObject} tree, as earlier versions did, for comparison
+     * with {@link #decodeJson()}.
+     */
+    @Benchmark
+    public Map<String, DialogState> decodeJsonTree() {
+        Map<String, DialogState> result = new LinkedHashMap<>();
+        JsonObject root = JsonParser.parseString(json).getAsJsonObject();
+        for (var entry : root.entrySet()) {
+            result.put(entry.getKey(), jsonToState(entry.getKey(), entry.getValue().getAsJsonObject()));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Map<String, DialogState> decodeBinary() {
+        return DialogStateBinaryCodec.decode(binary);
+    }
+
+    // The tree decoder removed from DialogPositionPreferences when the streaming reader was added
+    private static DialogState jsonToState(String windowId, JsonObject obj) {
+        JsonElement x = getMember(obj, "x", null);
+        JsonElement y = getMember(obj, "y", null);
+        JsonElement w = getMember(obj, "w", "width");
+        JsonElement h = getMember(obj, "h", "height");
+        JsonElement m = getMember(obj, "m", "modality");
+        JsonElement si = getMember(obj, "si", "screenIndex");
+        JsonElement sx = getMember(obj, "sx", "scaleX");
+        JsonElement sy = getMember(obj, "sy", "scaleY");
+        Modality modality = Modality.NONE;
+        if (m != null) {
+            try {
+                modality = Modality.valueOf(m.getAsString());
+            } catch (IllegalArgumentException e) {
+                // Keep default
+            }
+        }
+        double scaleX = sx == null ? 1.0 : sx.getAsDouble();
+        double scaleY = sy == null ? 1.0 : sy.getAsDouble();
+        String title = obj.has("title") ? obj.get("title").getAsString() : windowId;
+        return new DialogState(windowId, title,
+                x == null ? 0 : x.getAsInt(), y == null ? 0 : y.getAsInt(),
+                w == null ? 0 : w.getAsInt(), h == null ? 0 : h.getAsInt(),
+                modality, false, si == null ? 0 : si.getAsInt(),
+                scaleX > 0 ? scaleX : 1.0, scaleY > 0 ? scaleY : 1.0);
+    }
+
+    private static JsonElement getMember(JsonObject obj, String key, String altKey) {
+        if (obj.has(key)) {
+            return obj.get(key);
+        }
+        return altKey != null && obj.has(altKey) ? obj.get(altKey) : null;
+    }
+}
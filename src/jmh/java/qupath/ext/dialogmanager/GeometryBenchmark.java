@@ -0,0 +1,78 @@
+package qupath.ext.dialogmanager;
+
+import javafx.geometry.Rectangle2D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Screen lookups made when restoring saved positions.
+ * <p>
+ * Screens come from {@link TestScreens#sideBySide(int)}, which stands in for
+ * {@code Screen.getScreens()} so the benchmarks run without a display.
+ */
+@State(Scope.Benchmark)
+public class GeometryBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int screens;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int entries;
+
+    private ScreenTopology topology;
+    private DialogState[] states;
+    private Rectangle2D[] bounds;
+    private Rectangle2D[] visualBounds;
+    private double[] scaleX;
+    private double[] scaleY;
+
+    @Setup
+    public void setUp() {
+        topology = TestScreens.sideBySide(screens);
+        states = BenchmarkData.states(entries, screens).values().toArray(DialogState[]::new);
+        bounds = new Rectangle2D[screens];
+        visualBounds = new Rectangle2D[screens];
+        scaleX = new double[screens];
+        scaleY = new double[screens];
+        for (int i = 0; i < screens; i++) {
+            bounds[i] = topology.getBounds(i);
+            visualBounds[i] = topology.getVisualBounds(i);
+            scaleX[i] = topology.getScaleX(i);
+            scaleY[i] = topology.getScaleY(i);
+        }
+    }
+
+    /**
+     * Choose the screen to restore each saved state to.
+     */
+    @Benchmark
+    public void findBestScreenForState(Blackhole blackhole) {
+        for (DialogState state : states) {
+            blackhole.consume(DialogPositionManager.findBestScreenForState(topology, state));
+        }
+    }
+
+    /**
+     * Check whether each saved position is still visible enough to restore as it is.
+     */
+    @Benchmark
+    public void isSufficientlyVisible(Blackhole blackhole) {
+        for (DialogState state : states) {
+            blackhole.consume(topology.isSufficientlyVisible(
+                    state.x(), state.y(), state.width(), state.height(), 100));
+        }
+    }
+
+    /**
+     * Take a new snapshot of the screens and compute its fingerprint,
+     * as happens each time the screen list changes.
+     */
+    @Benchmark
+    public String computeScreenFingerprint() {
+        return ScreenTopology.of(bounds, visualBounds, scaleX, scaleY, 0).getFingerprint();
+    }
+}
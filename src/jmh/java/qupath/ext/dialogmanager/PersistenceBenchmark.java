@@ -0,0 +1,92 @@
+package qupath.ext.dialogmanager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loading and saving dialog positions through {@link DialogPositionPreferences}.
+ * <p>
+ * The {@code preferences} stores write to an in-memory preference node (see
+ * {@link InMemoryPreferencesFactory}), so the numbers cover the store's own work:
+ * sharding, encoding and eviction, but not the platform's preference backend.
+ * Background writes are held off for the whole run, so each benchmark that flushes
+ * does so itself.
+ */
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int entries;
+
+    @Param({"memory", "preferences", "preferences-binary"})
+    public String store;
+
+    private Map<String, DialogState> states;
+    private List<DialogState> stateList;
+    private String[] windowIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DialogPositionPreferences.setFlushDelayMillis(Integer.MAX_VALUE);
+        if ("memory".equals(store)) {
+            DialogPositionPreferences.setStore(DialogStateStore.inMemory());
+        } else {
+            DialogPositionPreferences.setStore(DialogPositionPreferences.createConfiguredStore());
+            DialogPositionPreferences.setBinaryEncodingEnabled("preferences-binary".equals(store));
+        }
+        states = BenchmarkData.states(entries, 2);
+        stateList = List.copyOf(states.values());
+        windowIds = states.keySet().toArray(String[]::new);
+        DialogPositionPreferences.saveAll(states);
+        DialogPositionPreferences.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DialogPositionPreferences.clearAll();
+    }
+
+    /**
+     * Copy every saved state, as the manager does when it starts.
+     */
+    @Benchmark
+    public Map<String, DialogState> loadAll() {
+        return DialogPositionPreferences.loadAll();
+    }
+
+    /**
+     * Look up one saved state, as happens each time a dialog is shown.
+     */
+    @Benchmark
+    public DialogState get() {
+        return DialogPositionPreferences.get(windowIds[next++ % windowIds.length]);
+    }
+
+    /**
+     * Replace every saved state and write them, as on shutdown.
+     */
+    @Benchmark
+    public void saveAllAndFlush() {
+        DialogPositionPreferences.saveAll(states);
+        DialogPositionPreferences.flush();
+    }
+
+    /**
+     * Save one state and write it, as when a single dialog is closed.
+     * Only the shard holding the state is rewritten.
+     */
+    @Benchmark
+    public void saveOneAndFlush() {
+        DialogPositionPreferences.save(stateList.get(next++ % stateList.size()));
+        DialogPositionPreferences.flush();
+    }
+}
@@ -0,0 +1,123 @@
+package qupath.ext.dialogmanager;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for window tracking and persistence.
+ * <p>
+ * Each event is timed from {@link Event#begin()} to {@link Event#commit()}, so a
+ * recording shows how long the dialog manager spent on each window, and on which thread.
+ * Callers follow the usual pattern of filling in fields only when
+ * {@link Event#shouldCommit()} returns true. While no recording is running the JIT removes
+ * the event objects altogether, so the events cost nothing in normal use.
+ * <p>
+ * The events appear under <i>QuPath / Dialog Manager</i> in JDK Mission Control.
+ */
+final class DialogManagerEvents {
+
+    private DialogManagerEvents() {
+        // Utility class - no instantiation
+    }
+
+    /**
+     * A newly shown window was matched against the saved positions and tracking was set up.
+     */
+    @Name("qupath.dialogmanager.WindowProcessed")
+    @Label("Window Processed")
+    @Category({"QuPath", "Dialog Manager"})
+    @Description("A new window was looked up in the saved positions and tracking was set up")
+    static final class WindowProcessed extends Event {
+        @Label("Window ID")
+        String windowId;
+
+        @Label("Saved Position Found")
+        boolean savedPositionFound;
+
+        @Label("Already Showing")
+        @Description("Whether the window was showing before it was processed, so it may visibly jump")
+        boolean alreadyShowing;
+    }
+
+    /**
+     * A saved position was applied to a window, or rejected as off-screen.
+     */
+    @Name("qupath.dialogmanager.PositionRestored")
+    @Label("Position Restored")
+    @Category({"QuPath", "Dialog Manager"})
+    @Description("A saved position was applied to a window, or the window was centered because it was off-screen")
+    static final class PositionRestored extends Event {
+        @Label("Window ID")
+        String windowId;
+
+        @Label("Applied")
+        @Description("False if the saved position was off-screen and the window was centered instead")
+        boolean applied;
+
+        @Label("Scale Changed")
+        boolean scaleChanged;
+
+        @Label("Screen Index")
+        int screenIndex;
+    }
+
+    /**
+     * Position or size events from a tracked window. These are frequent while a window is
+     * dragged, so no stack trace is recorded.
+     */
+    @Name("qupath.dialogmanager.PositionChanged")
+    @Label("Position Changed")
+    @Category({"QuPath", "Dialog Manager"})
+    @Description("A tracked window moved or was resized")
+    @StackTrace(false)
+    static final class PositionChanged extends Event {
+        @Label("Window ID")
+        String windowId;
+
+        @Label("Coalesced")
+        @Description("Whether the event was merged into an update that was already pending")
+        boolean coalesced;
+    }
+
+    /**
+     * All saved positions were replaced.
+     */
+    @Name("qupath.dialogmanager.SaveAll")
+    @Label("Save All")
+    @Category({"QuPath", "Dialog Manager"})
+    @Description("All saved positions were replaced; the write to preferences follows on the persistence thread")
+    static final class SaveAll extends Event {
+        @Label("Entry Count")
+        int entryCount;
+    }
+
+    /**
+     * One preference shard was serialized and written.
+     */
+    @Name("qupath.dialogmanager.ShardWritten")
+    @Label("Shard Written")
+    @Category({"QuPath", "Dialog Manager"})
+    @Description("Saved positions for one preference shard were serialized and written")
+    static final class ShardWritten extends Event {
+        @Label("Shard")
+        int shard;
+
+        @Label("Entry Count")
+        int entryCount;
+
+        @Label("Evicted Count")
+        int evictedCount;
+
+        @Label("Serialized Size")
+        @DataAmount
+        long serializedSize;
+
+        @Label("Binary Encoding")
+        boolean binary;
+    }
+}
@@ -5,9 +5,11 @@ import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.SeparatorMenuItem;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qupath.ext.dialogmanager.ui.DialogManagerUI;
+import qupath.ext.dialogmanager.ui.LayoutDialogs;
 import qupath.lib.common.Version;
 import qupath.lib.gui.QuPathGUI;
 import qupath.lib.gui.extensions.QuPathExtension;
@@ -63,13 +65,22 @@ public class DialogManagerExtension implements QuPathExtension {
 
         logger.info("Installing extension: {}", EXTENSION_NAME);
 
-        // Initialize preferences
+        // Initialize preferences and choose where dialog positions are stored
         DialogPositionPreferences.initialize();
+        DialogPositionPreferences.setStore(DialogPositionPreferences.createConfiguredStore());
+
+        // Start the FX thread stall watchdog if it was left on, before any callbacks run
+        FxStallWatchdog watchdog = FxStallWatchdog.getInstance();
+        watchdog.setBudgetMillis(DialogPositionPreferences.getStallBudgetMillis());
+        watchdog.setEnabled(DialogPositionPreferences.isStallWatchdogEnabled());
 
         // Initialize the manager with the main QuPath stage
         DialogPositionManager manager = DialogPositionManager.getInstance();
         manager.initialize(qupath.getStage());
 
+        // Switch to a per-project layout when the project changes (if enabled)
+        ProjectLayoutProfiles.getInstance().install(qupath);
+
         // Add some default targeted dialogs for testing
         // These are common QuPath dialogs we want to track
         addDefaultTargetedDialogs(manager);
@@ -102,6 +113,21 @@ public class DialogManagerExtension implements QuPathExtension {
             }
         }
 
+        // Position saves are written in the background; make sure the last ones
+        // reach preferences, along with the positions remembered for each screen
+        // configuration, when QuPath closes. The shutdown hook is a backstop for
+        // dialogs that are closed after the main window.
+        if (mainStage != null) {
+            mainStage.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> {
+                DialogPositionPreferences.flush();
+                manager.saveScreenLayouts();
+            });
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            DialogPositionPreferences.flush();
+            manager.saveScreenLayouts();
+        }, "dialog-manager-shutdown-flush"));
+
         // Add menu items
         Platform.runLater(() -> addMenuItems(qupath));
 
@@ -150,7 +176,16 @@ public class DialogManagerExtension implements QuPathExtension {
         // Quick action: Center all off-screen dialogs
         MenuItem centerOffscreenItem = new MenuItem("Recover Off-Screen Dialogs");
         centerOffscreenItem.setOnAction(e -> recoverOffScreenDialogs());
-        windowMenu.getItems().add(insertIndex, centerOffscreenItem);
+        windowMenu.getItems().add(insertIndex++, centerOffscreenItem);
+
+        // Named layouts
+        MenuItem saveLayoutItem = new MenuItem("Save Dialog Layout As...");
+        saveLayoutItem.setOnAction(e -> LayoutDialogs.promptToSaveLayout(qupath.getStage()));
+        windowMenu.getItems().add(insertIndex++, saveLayoutItem);
+
+        MenuItem applyLayoutItem = new MenuItem("Apply Dialog Layout...");
+        applyLayoutItem.setOnAction(e -> LayoutDialogs.promptToApplyLayout(qupath.getStage()));
+        windowMenu.getItems().add(insertIndex, applyLayoutItem);
 
         logger.debug("Added menu items to Window menu");
     }
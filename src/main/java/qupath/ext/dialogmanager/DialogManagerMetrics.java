@@ -0,0 +1,222 @@
+package qupath.ext.dialogmanager;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers for the work done by the dialog manager.
+ * <p>
+ * Recording is cheap enough to stay on all the time: each counter is a {@link LongAdder},
+ * and a timed section costs two {@link System#nanoTime()} calls. Methods may be called
+ * from any thread.
+ * <p>
+ * Values accumulate from startup, or from the last call to {@link #reset()}.
+ */
+public final class DialogManagerMetrics {
+
+    private static DialogManagerMetrics instance;
+
+    /**
+     * Things that are counted.
+     */
+    public enum Counter {
+        /** Windows added to or removed from the window list, and deferred title and showing events */
+        WINDOW_EVENTS("Window events"),
+        /** Position and size change events from tracked windows */
+        POSITION_EVENTS("Position events"),
+        /** Position events merged into an update that was already pending */
+        POSITION_EVENTS_COALESCED("Position events coalesced"),
+        /** Pending position updates dropped because the window closed first */
+        POSITION_UPDATES_DROPPED("Position updates dropped"),
+        /** Saved positions restored to a window */
+        RESTORES_APPLIED("Restores applied"),
+        /** Saved positions rejected as off-screen, with the window centered instead */
+        RESTORES_REJECTED("Restores rejected"),
+        /** Saved positions evicted to keep a preference entry within its size limit */
+        EVICTIONS("Evictions"),
+        /** Bytes written to preferences or the journal file */
+        SERIALIZED_BYTES("Serialized bytes");
+
+        private final String displayName;
+
+        Counter(String displayName) {
+            this.displayName = displayName;
+        }
+
+        /**
+         * Get a name for display.
+         */
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /**
+     * Things that are timed.
+     */
+    public enum Timer {
+        /**
+         * Reading all saved positions with {@link DialogPositionPreferences#loadAll()}
+         * or {@link DialogPositionPreferences#getAll()}
+         */
+        LOAD_ALL("loadAll"),
+        /** Replacing all saved positions with {@link DialogPositionPreferences#saveAll(Map)} */
+        SAVE_ALL("saveAll"),
+        /** Writing pending changes to the store, usually on the background thread */
+        FLUSH("Store flush"),
+        /** Manager listeners and queued updates running on the FX application thread */
+        FX_CALLBACKS("FX thread callbacks");
+
+        private final String displayName;
+
+        Timer(String displayName) {
+            this.displayName = displayName;
+        }
+
+        /**
+         * Get a name for display.
+         */
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /**
+     * Accumulated timings for one {@link Timer}.
+     *
+     * @param count Number of timed sections
+     * @param totalNanos Total time, in nanoseconds
+     * @param maxNanos Longest single section, in nanoseconds
+     */
+    public record TimerStats(long count, long totalNanos, long maxNanos) {
+
+        /**
+         * Get the mean time per section in milliseconds, or 0 if there were none.
+         */
+        public double meanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        /**
+         * Get the longest single section in milliseconds.
+         */
+        public double maxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        /**
+         * Get the total time in milliseconds.
+         */
+        public double totalMillis() {
+            return totalNanos / 1e6;
+        }
+    }
+
+    private static final class TimerData {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private void reset() {
+            count.reset();
+            total.reset();
+            max.reset();
+        }
+    }
+
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+    private final Map<Timer, TimerData> timers = new EnumMap<>(Timer.class);
+
+    private DialogManagerMetrics() {
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+        for (Timer timer : Timer.values()) {
+            timers.put(timer, new TimerData());
+        }
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized DialogManagerMetrics getInstance() {
+        if (instance == null) {
+            instance = new DialogManagerMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Increment a counter by one.
+     */
+    public void increment(Counter counter) {
+        counters.get(counter).increment();
+    }
+
+    /**
+     * Add to a counter.
+     */
+    public void add(Counter counter, long amount) {
+        counters.get(counter).add(amount);
+    }
+
+    /**
+     * Record a timed section that started at {@code startNanos}, as returned by
+     * {@link System#nanoTime()}, and ends now.
+     */
+    public void recordSince(Timer timer, long startNanos) {
+        record(timer, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Record a timed section.
+     */
+    public void record(Timer timer, long durationNanos) {
+        TimerData data = timers.get(timer);
+        data.count.increment();
+        data.total.add(durationNanos);
+        data.max.accumulate(durationNanos);
+    }
+
+    /**
+     * Get the current value of a counter.
+     */
+    public long getCount(Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    /**
+     * Get the current timings for a timer.
+     */
+    public TimerStats getTimer(Timer timer) {
+        TimerData data = timers.get(timer);
+        return new TimerStats(data.count.sum(), data.total.sum(), data.max.get());
+    }
+
+    /**
+     * Set all counters and timers back to zero.
+     */
+    public void reset() {
+        counters.values().forEach(LongAdder::reset);
+        timers.values().forEach(TimerData::reset);
+    }
+
+    /**
+     * Describe all counters and timers, one per line.
+     */
+    public String summarize() {
+        StringBuilder sb = new StringBuilder();
+        for (Counter counter : Counter.values()) {
+            sb.append(String.format("%-28s %,d%n", counter.getDisplayName(), getCount(counter)));
+        }
+        for (Timer timer : Timer.values()) {
+            TimerStats stats = getTimer(timer);
+            sb.append(String.format("%-28s %,d calls, mean %.3f ms, max %.3f ms, total %.1f ms%n",
+                    timer.getDisplayName(), stats.count(), stats.meanMillis(), stats.maxMillis(),
+                    stats.totalMillis()));
+        }
+        return sb.toString();
+    }
+}
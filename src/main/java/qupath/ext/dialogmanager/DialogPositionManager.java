@@ -3,7 +3,6 @@ package qupath.ext.dialogmanager;
 import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
 import javafx.beans.value.ChangeListener;
-import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Rectangle2D;
@@ -14,10 +13,17 @@ import javafx.stage.Window;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -53,11 +59,26 @@ public final class DialogPositionManager {
      */
     private static final double MIN_VISIBLE_PIXELS = 100;
 
+    /**
+     * ID of the main window in captured layouts and as the owner of untitled windows.
+     */
+    static final String MAIN_WINDOW_ID = "QuPath";
+
+    // File in the storage directory holding the positions for each screen configuration
+    private static final String SCREEN_LAYOUTS_FILE = "screen-layouts.json";
+
+    // Distance below a window's top edge that is assumed to be within its title bar
+    private static final double TITLE_BAR_OFFSET = 10;
+
     // Windows we're actively tracking (have attached listeners to)
     private final Map<Window, WindowTracker> trackedWindows = new ConcurrentHashMap<>();
 
-    // Observable list of current dialog states for UI binding
-    private final ObservableList<DialogState> dialogStates = FXCollections.observableArrayList();
+    // Reverse index from windowId to the tracked windows currently using it.
+    // Several open windows may share a title, so each ID maps to a set.
+    private final Map<String, Set<Window>> windowsById = new HashMap<>();
+
+    // Observable list of current dialog states for UI binding, indexed by windowId
+    private final DialogStateList dialogStates = new DialogStateList();
 
     // Set of window IDs we should NOT track (user has explicitly excluded them)
     private final Set<String> excludedWindowIds = new HashSet<>();
@@ -74,9 +95,50 @@ public final class DialogPositionManager {
     // Whether to log routine tracking/restore messages at INFO (true) or DEBUG (false)
     private boolean verboseLogging = false;
 
+    // Counters and timers for the work done here
+    private final DialogManagerMetrics metrics = DialogManagerMetrics.getInstance();
+
+    // Number of manager callbacks currently running on the FX thread, so that only the
+    // outermost one is timed (FX thread only)
+    private int callbackDepth = 0;
+
+    // Reports callbacks that hold up the FX thread, if enabled
+    private final FxStallWatchdog watchdog = FxStallWatchdog.getInstance();
+
+    // Last known positions on each screen configuration, for docking and undocking
+    private final ScreenLayoutCache screenLayouts = new ScreenLayoutCache();
+
+    // Writes the screen layouts file in the background
+    private final PersistenceScheduler screenLayoutWriter = new PersistenceScheduler(this::writeScreenLayouts, () -> 0);
+
+    // True while a main window update is queued for the next pulse (FX thread only)
+    private boolean mainWindowUpdatePending = false;
+
+    // Maps window titles to window IDs
+    private TitleNormalizer titleNormalizer = TitleNormalizer.parse(DialogPositionPreferences.getTitleRules());
+
+    // Window ID last computed for each window and the title it was computed from, so that
+    // titles are only normalized again when they change (FX thread only)
+    private final Map<Window, WindowIdentity> windowIdentities = new WeakHashMap<>();
+
+    private record WindowIdentity(String title, String windowId) {
+    }
+
+    // Bounds of screens removed since the pending screen change update was queued,
+    // or null if none is queued (FX thread only)
+    private List<Rectangle2D> pendingRemovedScreens;
+
+    // Fingerprint of the screen configuration that positions are recorded against, or null
+    // until first needed. Only moves on once a screen change has settled (FX thread only)
+    private String layoutFingerprint;
+
     private DialogPositionManager() {
         // Load saved states on initialization
         loadSavedStates();
+        Path screenLayoutsFile = getScreenLayoutsFile();
+        if (screenLayoutsFile != null) {
+            screenLayouts.read(screenLayoutsFile);
+        }
     }
 
     /**
@@ -101,27 +163,43 @@ public final class DialogPositionManager {
         // Log current screen configuration for debugging
         logScreenConfiguration();
 
-        // Start listening to window list changes
+        // Start listening to window list changes, handling each change as one batch
         Window.getWindows().addListener((ListChangeListener<Window>) change -> {
-            while (change.next()) {
-                if (change.wasAdded()) {
-                    for (Window window : change.getAddedSubList()) {
-                        onWindowAdded(window);
+            long start = enterCallback("Window list");
+            try {
+                List<Window> added = new ArrayList<>();
+                List<Window> removed = new ArrayList<>();
+                while (change.next()) {
+                    if (change.wasRemoved()) {
+                        removed.addAll(change.getRemoved());
                     }
-                }
-                if (change.wasRemoved()) {
-                    for (Window window : change.getRemoved()) {
-                        onWindowRemoved(window);
+                    if (change.wasAdded()) {
+                        added.addAll(change.getAddedSubList());
                     }
                 }
+                metrics.add(DialogManagerMetrics.Counter.WINDOW_EVENTS, removed.size() + added.size());
+                onWindowsRemoved(removed);
+                onWindowsAdded(added);
+            } finally {
+                exitCallback(start);
             }
         });
 
         // Process any windows that already exist
-        for (Window window : Window.getWindows()) {
-            onWindowAdded(window);
+        onWindowsAdded(List.copyOf(Window.getWindows()));
+
+        // Remember where the main window is on each screen configuration
+        if (mainStage != null) {
+            InvalidationListener mainWindowListener = obs -> onMainWindowMoved();
+            mainStage.xProperty().addListener(mainWindowListener);
+            mainStage.yProperty().addListener(mainWindowListener);
+            mainStage.widthProperty().addListener(mainWindowListener);
+            mainStage.heightProperty().addListener(mainWindowListener);
         }
 
+        // Put windows back where they were when a known screen configuration returns
+        ScreenTopology.addListener(this::onScreenTopologyChanged);
+
         logger.info("DialogPositionManager initialized, tracking {} windows", trackedWindows.size());
     }
 
@@ -134,11 +212,7 @@ public final class DialogPositionManager {
         logger.debug("Added targeted title: {}", title);
 
         // Check if any existing windows match
-        for (Window window : Window.getWindows()) {
-            if (shouldTrackWindow(window) && !trackedWindows.containsKey(window)) {
-                startTracking(window);
-            }
-        }
+        trackMatchingWindows();
     }
 
     /**
@@ -171,19 +245,205 @@ public final class DialogPositionManager {
 
         // Re-evaluate all windows if switching to track all
         if (trackAll) {
-            for (Window window : Window.getWindows()) {
-                if (shouldTrackWindow(window) && !trackedWindows.containsKey(window)) {
-                    startTracking(window);
-                }
+            trackMatchingWindows();
+        }
+    }
+
+    /**
+     * Get the rules currently used to map window titles to window IDs.
+     */
+    public TitleNormalizer getTitleNormalizer() {
+        return titleNormalizer;
+    }
+
+    /**
+     * Set and save the rules that map window titles to window IDs, and re-identify the
+     * tracked windows with them. Windows keep their current positions; the new IDs are
+     * used the next time positions are saved or restored.
+     * Must be called on the FX application thread.
+     *
+     * @param rules The rules, one per line (see {@link TitleNormalizer})
+     * @return The parsed rules, including any lines that could not be parsed
+     */
+    public TitleNormalizer setTitleRules(String rules) {
+        TitleNormalizer normalizer = TitleNormalizer.parse(rules);
+        DialogPositionPreferences.setTitleRules(rules);
+        titleNormalizer = normalizer;
+        windowIdentities.clear();
+        for (WindowTracker tracker : trackedWindows.values()) {
+            tracker.onTitleChanged();
+        }
+
+        // Keep positions saved under titles the new rules map to a different ID
+        Map<String, String> migrated = DialogPositionPreferences.migrateWindowIds(normalizer);
+        for (var entry : migrated.entrySet()) {
+            DialogState listed = dialogStates.get(entry.getKey());
+            if (listed != null && !listed.isCurrentlyOpen()) {
+                dialogStates.remove(entry.getKey());
+            }
+            DialogState saved = DialogPositionPreferences.get(entry.getValue());
+            if (saved != null && dialogStates.get(entry.getValue()) == null) {
+                dialogStates.put(saved.withOpenStatus(false));
             }
         }
+        logger.info("Using {} window title rule(s)", normalizer.getRuleCount());
+        return normalizer;
+    }
+
+    /**
+     * Get the number of window position/size events that were dropped because an
+     * update for the same window was already pending.
+     */
+    public long getCoalescedPositionEventCount() {
+        return metrics.getCount(DialogManagerMetrics.Counter.POSITION_EVENTS_COALESCED);
     }
 
     /**
      * Get the observable list of dialog states for UI binding.
+     * The list is read-only and its order is not meaningful; sort it for display.
      */
     public ObservableList<DialogState> getDialogStates() {
-        return dialogStates;
+        return dialogStates.getReadOnlyList();
+    }
+
+    /**
+     * Remove all entries from the dialog state list.
+     * Must be called on the FX application thread.
+     */
+    public void clearDialogStates() {
+        dialogStates.clear();
+    }
+
+    /**
+     * Forget the positions remembered for each screen configuration.
+     * The file they are kept in is updated in the background.
+     */
+    public void clearScreenLayouts() {
+        screenLayouts.clear();
+        screenLayoutWriter.schedule();
+    }
+
+    /**
+     * Write the positions remembered for each screen configuration now, if they have
+     * changed, on the calling thread. Safe to call from any thread; meant for shutdown,
+     * since the file is otherwise written in the background.
+     */
+    public void saveScreenLayouts() {
+        screenLayoutWriter.flushNow();
+    }
+
+    private void writeScreenLayouts() {
+        Path file = getScreenLayoutsFile();
+        if (file != null) {
+            screenLayouts.write(file);
+        }
+    }
+
+    private static Path getScreenLayoutsFile() {
+        Path directory = DialogPositionPreferences.getStorageDirectory();
+        return directory == null ? null : directory.resolve(SCREEN_LAYOUTS_FILE);
+    }
+
+    /**
+     * Move every open tracked window to its saved position, e.g. after a different
+     * layout has been loaded, and rebuild the state list from the saved states.
+     * <p>
+     * The saved states are read once, and all windows are moved in a single pass on the
+     * FX application thread, followed by a single change to the state list.
+     */
+    public void applySavedStates() {
+        // A newly selected store may hold positions saved before the current title rules
+        DialogPositionPreferences.migrateWindowIds(titleNormalizer);
+        Map<String, DialogState> saved = DialogPositionPreferences.getAll();
+        if (Platform.isFxApplicationThread()) {
+            applyStates(saved);
+        } else {
+            Platform.runLater(() -> applyStates(saved));
+        }
+    }
+
+    private void applyStates(Map<String, DialogState> saved) {
+        List<DialogState> states = new ArrayList<>(saved.size() + windowsById.size());
+        for (DialogState state : saved.values()) {
+            states.add(state.withOpenStatus(false));
+        }
+        int moved = 0;
+        for (var entry : windowsById.entrySet()) {
+            DialogState savedState = saved.get(entry.getKey());
+            for (Window window : entry.getValue()) {
+                if (!window.isShowing()) {
+                    continue;
+                }
+                if (savedState != null) {
+                    restoreWindowPositionWithValidation(window, savedState);
+                    moved++;
+                }
+                // Open windows are listed with their live state, replacing any saved one
+                states.add(createStateFromWindow(window).withOpenStatus(true));
+            }
+        }
+        dialogStates.replaceAll(states);
+        logVerbose("Applied saved layout to {} open windows", moved);
+    }
+
+    /**
+     * Capture the positions of the main window and every open tracked dialog.
+     * Must be called on the FX application thread.
+     *
+     * @return A snapshot of the current layout
+     */
+    public WindowLayout captureLayout() {
+        Map<String, DialogState> windows = new LinkedHashMap<>();
+        for (var entry : windowsById.entrySet()) {
+            for (Window window : entry.getValue()) {
+                // Only one position can be kept per ID, so take the first showing window
+                if (window.isShowing()) {
+                    windows.put(entry.getKey(), createStateFromWindow(window));
+                    break;
+                }
+            }
+        }
+        DialogState main = mainStage == null ? null : createMainWindowState();
+        return new WindowLayout(computeScreenFingerprint(), System.currentTimeMillis(), main, windows);
+    }
+
+    /**
+     * Move the main window and every open tracked dialog to their positions in a layout.
+     * <p>
+     * All windows are moved in a single pass on the FX application thread, so they are
+     * repositioned in the same pulse. Dialogs use the same validation as when they are
+     * shown, so positions that are now off-screen are recovered; the main window is only
+     * moved if its position is sufficiently visible. Windows not in the layout are left
+     * where they are, and saved positions are not changed until windows are next moved or
+     * closed.
+     *
+     * @param layout The layout to apply
+     */
+    public void applyLayout(WindowLayout layout) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> applyLayout(layout));
+            return;
+        }
+        List<DialogState> live = new ArrayList<>();
+        for (var entry : windowsById.entrySet()) {
+            DialogState state = layout.windows().get(entry.getKey());
+            if (state == null) {
+                continue;
+            }
+            for (Window window : entry.getValue()) {
+                if (window.isShowing()) {
+                    restoreWindowPositionWithValidation(window, state);
+                    live.add(createStateFromWindow(window));
+                }
+            }
+        }
+
+        if (mainStage != null) {
+            applyMainWindowState(layout.mainWindow());
+        }
+
+        dialogStates.putAll(live);
+        logVerbose("Applied layout to {} open windows", live.size());
     }
 
     /**
@@ -194,18 +454,22 @@ public final class DialogPositionManager {
      */
     public boolean centerDialog(String windowId) {
         if (windowId == null) return false;
-        for (var entry : trackedWindows.entrySet()) {
-            if (windowId.equals(getWindowId(entry.getKey()))) {
-                Window window = entry.getKey();
-                Platform.runLater(() -> {
-                    centerWindowOnScreen(window, Screen.getPrimary());
-                    logger.info("Centered dialog: {}", windowId);
-                });
-                return true;
-            }
+        Set<Window> windows = windowsById.get(windowId);
+        if (windows == null || windows.isEmpty()) {
+            logger.warn("Cannot center dialog - not currently open: {}", windowId);
+            return false;
         }
-        logger.warn("Cannot center dialog - not currently open: {}", windowId);
-        return false;
+        // Center every window sharing this ID, so duplicates aren't left off-screen
+        List<Window> toCenter = List.copyOf(windows);
+        Platform.runLater(() -> {
+            ScreenTopology topology = ScreenTopology.current();
+            Rectangle2D primaryBounds = topology.getVisualBounds(topology.getPrimaryIndex());
+            for (Window window : toCenter) {
+                centerWindowOnScreen(window, primaryBounds);
+            }
+            logger.info("Centered dialog: {}", windowId);
+        });
+        return true;
     }
 
     /**
@@ -216,19 +480,17 @@ public final class DialogPositionManager {
      */
     public boolean closeDialog(String windowId) {
         if (windowId == null) return false;
-        for (var entry : trackedWindows.entrySet()) {
-            if (windowId.equals(getWindowId(entry.getKey()))) {
-                Window window = entry.getKey();
-                Platform.runLater(() -> {
-                    if (window instanceof Stage stage) {
-                        stage.close();
-                        logger.info("Closed dialog: {}", windowId);
-                    }
-                });
-                return true;
-            }
+        Window window = findTrackedWindow(windowId);
+        if (window == null) {
+            return false;
         }
-        return false;
+        Platform.runLater(() -> {
+            if (window instanceof Stage stage) {
+                stage.close();
+                logger.info("Closed dialog: {}", windowId);
+            }
+        });
+        return true;
     }
 
     /**
@@ -241,6 +503,7 @@ public final class DialogPositionManager {
     public void resetDialogPosition(String windowId) {
         if (windowId == null) return;
         DialogPositionPreferences.remove(windowId);
+        screenLayouts.removeWindow(windowId);
 
         // If the window is currently open, refresh its state from the live window
         // rather than removing it from the list entirely
@@ -251,7 +514,7 @@ public final class DialogPositionManager {
             logger.info("Reset saved position for open dialog: {}", windowId);
         } else {
             // Closed dialog with no saved position -- remove from list
-            Platform.runLater(() -> dialogStates.removeIf(s -> windowId.equals(s.windowId())));
+            Platform.runLater(() -> dialogStates.remove(windowId));
             logger.info("Reset dialog position to default: {}", windowId);
         }
     }
@@ -263,14 +526,32 @@ public final class DialogPositionManager {
      * @return The window if found and showing, null otherwise
      */
     private Window findOpenWindow(String windowId) {
-        for (var entry : trackedWindows.entrySet()) {
-            if (windowId.equals(getWindowId(entry.getKey())) && entry.getKey().isShowing()) {
-                return entry.getKey();
+        Set<Window> windows = windowsById.get(windowId);
+        if (windows != null) {
+            for (Window window : windows) {
+                if (window.isShowing()) {
+                    return window;
+                }
             }
         }
         return null;
     }
 
+    /**
+     * Find a tracked window by its ID, preferring one that is showing.
+     *
+     * @param windowId The window ID to find
+     * @return The window if found, null otherwise
+     */
+    private Window findTrackedWindow(String windowId) {
+        Window window = findOpenWindow(windowId);
+        if (window != null) {
+            return window;
+        }
+        Set<Window> windows = windowsById.get(windowId);
+        return windows == null || windows.isEmpty() ? null : windows.iterator().next();
+    }
+
     /**
      * Bring a dialog to the front if it's currently open.
      *
@@ -279,19 +560,17 @@ public final class DialogPositionManager {
      */
     public boolean bringToFront(String windowId) {
         if (windowId == null) return false;
-        for (var entry : trackedWindows.entrySet()) {
-            if (windowId.equals(getWindowId(entry.getKey()))) {
-                Window window = entry.getKey();
-                Platform.runLater(() -> {
-                    if (window instanceof Stage stage) {
-                        stage.toFront();
-                        stage.requestFocus();
-                    }
-                });
-                return true;
-            }
+        Window window = findTrackedWindow(windowId);
+        if (window == null) {
+            return false;
         }
-        return false;
+        Platform.runLater(() -> {
+            if (window instanceof Stage stage) {
+                stage.toFront();
+                stage.requestFocus();
+            }
+        });
+        return true;
     }
 
     /**
@@ -303,7 +582,8 @@ public final class DialogPositionManager {
             return false;
         }
 
-        return isPositionSufficientlyVisible(state.x(), state.y(), state.width(), state.height());
+        return isPositionSufficientlyVisible(ScreenTopology.current(),
+                state.x(), state.y(), state.width(), state.height());
     }
 
     /**
@@ -318,19 +598,18 @@ public final class DialogPositionManager {
      */
     public String getScreenDiagnostics() {
         StringBuilder sb = new StringBuilder();
-        List<Screen> screens = Screen.getScreens();
-        sb.append(String.format("Detected %d screen(s):%n", screens.size()));
+        ScreenTopology topology = ScreenTopology.current();
+        sb.append(String.format("Detected %d screen(s):%n", topology.size()));
 
-        for (int i = 0; i < screens.size(); i++) {
-            Screen screen = screens.get(i);
-            Rectangle2D bounds = screen.getVisualBounds();
+        for (int i = 0; i < topology.size(); i++) {
+            Rectangle2D bounds = topology.getVisualBounds(i);
             sb.append(String.format(
                     "  Screen %d: %.0fx%.0f at (%.0f,%.0f) scale=%.2fx%.2f%s%n",
                     i,
                     bounds.getWidth(), bounds.getHeight(),
                     bounds.getMinX(), bounds.getMinY(),
-                    screen.getOutputScaleX(), screen.getOutputScaleY(),
-                    screen == Screen.getPrimary() ? " [PRIMARY]" : ""
+                    topology.getScaleX(i), topology.getScaleY(i),
+                    i == topology.getPrimaryIndex() ? " [PRIMARY]" : ""
             ));
         }
         return sb.toString();
@@ -357,27 +636,104 @@ public final class DialogPositionManager {
 
     private void loadSavedStates() {
         DialogPositionPreferences.initialize();
-        Map<String, DialogState> saved = DialogPositionPreferences.loadAll();
+        // Positions saved before a title rule applied would otherwise never be found again
+        DialogPositionPreferences.migrateWindowIds(titleNormalizer);
+        Map<String, DialogState> saved = DialogPositionPreferences.getAll();
 
-        // Add all saved states to our observable list (marked as not open)
+        // Add all saved states to our observable list (marked as not open) in one change
+        List<DialogState> closedStates = new ArrayList<>(saved.size());
         for (DialogState state : saved.values()) {
-            dialogStates.add(state.withOpenStatus(false));
+            closedStates.add(state.withOpenStatus(false));
         }
+        dialogStates.putAll(closedStates);
 
         logger.debug("Loaded {} saved dialog states", saved.size());
     }
 
-    private void onWindowAdded(Window window) {
+    /**
+     * Start tracking any open windows that should be tracked but aren't yet,
+     * e.g. after the tracking settings have changed.
+     */
+    private void trackMatchingWindows() {
+        List<DialogState> states = new ArrayList<>();
+        for (Window window : Window.getWindows()) {
+            if (shouldTrackWindow(window) && !trackedWindows.containsKey(window)) {
+                DialogState state = processNewWindow(window);
+                if (state != null) {
+                    states.add(state);
+                }
+            }
+        }
+        publishStates(states);
+    }
+
+    /**
+     * Handle a batch of windows added to the window list: restore and start tracking
+     * each one, then update the state list once for the whole batch.
+     */
+    private void onWindowsAdded(List<Window> windows) {
+        if (windows.isEmpty()) {
+            return;
+        }
+        List<DialogState> states = new ArrayList<>(windows.size());
+        for (Window window : windows) {
+            DialogState state = onWindowAdded(window);
+            if (state != null) {
+                states.add(state);
+            }
+        }
+        publishStates(states);
+    }
+
+    /**
+     * Handle a batch of windows removed from the window list: save the final state of
+     * each tracked one, then update the state list once for the whole batch.
+     */
+    private void onWindowsRemoved(List<Window> windows) {
+        if (windows.isEmpty()) {
+            return;
+        }
+        List<DialogState> states = new ArrayList<>(windows.size());
+        for (Window window : windows) {
+            DialogState state = onWindowRemoved(window);
+            if (state != null) {
+                states.add(state);
+            }
+        }
+        publishStates(states);
+    }
+
+    /**
+     * Add or replace several entries in the state list with a single change, and record
+     * them for the current screen configuration.
+     * Must be called on the FX application thread.
+     */
+    private void publishStates(List<DialogState> states) {
+        if (states.isEmpty()) {
+            return;
+        }
+        dialogStates.putAll(states);
+        for (DialogState state : states) {
+            recordScreenLayout(state);
+        }
+    }
+
+    /**
+     * Handle a window added to the window list.
+     *
+     * @return The window's state if tracking started straight away, otherwise null
+     */
+    private DialogState onWindowAdded(Window window) {
         // Only track Stage instances
         if (!(window instanceof Stage stage)) {
             logger.trace("Ignoring non-Stage window: {}", window.getClass().getSimpleName());
-            return;
+            return null;
         }
 
         // Don't track the main QuPath window
         if (window == mainStage) {
             logger.trace("Ignoring main QuPath window");
-            return;
+            return null;
         }
 
         String title = stage.getTitle();
@@ -386,7 +742,7 @@ public final class DialogPositionManager {
         // If the window already has a title and should be tracked, process immediately
         if (shouldTrackWindow(window)) {
             logVerbose("Tracking window: '{}'", title);
-            processNewWindow(window);
+            return processNewWindow(window);
         } else if (title == null || title.isBlank()) {
             // Title not set yet - listen for title changes
             logger.debug("Window has no title yet, adding title listener");
@@ -394,37 +750,53 @@ public final class DialogPositionManager {
                 @Override
                 public void changed(javafx.beans.value.ObservableValue<? extends String> obs,
                                     String oldTitle, String newTitle) {
-                    if (newTitle != null && !newTitle.isBlank()) {
+                    if (newTitle == null || newTitle.isBlank()) {
+                        return;
+                    }
+                    long start = enterCallback("Window title set");
+                    try {
+                        metrics.increment(DialogManagerMetrics.Counter.WINDOW_EVENTS);
                         logger.debug("Window title set to: '{}'", newTitle);
                         if (shouldTrackWindow(window)) {
                             stage.titleProperty().removeListener(this);
                             logVerbose("Now tracking window: '{}'", newTitle);
-                            processNewWindow(window);
+                            DialogState state = processNewWindow(window);
+                            if (state != null) {
+                                setDialogState(state);
+                            }
                         }
+                    } finally {
+                        exitCallback(start);
                     }
                 }
             });
         } else {
             logger.debug("Window '{}' not tracked (excluded or trackAllWindows=false)", title);
         }
+        return null;
     }
 
     /**
      * Process a new window that should be tracked.
      * Restores position BEFORE the window shows to prevent visual jumping.
+     * The saved position is looked up once, and used both before and after showing.
+     *
+     * @return The window's state if it is already showing and tracking has started,
+     *         otherwise null (tracking starts, and the state list is updated, once it shows)
      */
-    private void processNewWindow(Window window) {
+    private DialogState processNewWindow(Window window) {
         if (trackedWindows.containsKey(window)) {
             logger.trace("Window already being tracked, skipping");
-            return; // Already tracking
+            return null; // Already tracking
         }
 
+        DialogManagerEvents.WindowProcessed event = new DialogManagerEvents.WindowProcessed();
+        event.begin();
         String windowId = getWindowId(window);
         logger.debug("Processing new window: '{}' (showing={})", windowId, window.isShowing());
 
         // Check if we have a saved position BEFORE the window shows
-        Map<String, DialogState> saved = DialogPositionPreferences.loadAll();
-        DialogState savedState = saved.get(windowId);
+        DialogState savedState = findSavedState(windowId);
 
         if (savedState != null) {
             logVerbose("Found saved position for '{}': ({}, {})", windowId, savedState.x(), savedState.y());
@@ -432,13 +804,15 @@ public final class DialogPositionManager {
             logger.debug("No saved position for '{}'", windowId);
         }
 
-        if (window.isShowing()) {
+        boolean showing = window.isShowing();
+        DialogState state = null;
+        if (showing) {
             // Window already showing - restore position now (may cause brief jump)
             if (savedState != null) {
                 logVerbose("Restoring position for '{}' (window already showing)", windowId);
                 restoreWindowPositionWithValidation(window, savedState);
             }
-            startTracking(window);
+            state = startTracking(window);
         } else {
             // Window not yet showing - this is ideal!
             // Set position BEFORE show to prevent default centering
@@ -453,42 +827,65 @@ public final class DialogPositionManager {
                 @Override
                 public void changed(javafx.beans.value.ObservableValue<? extends Boolean> obs,
                                     Boolean wasShowing, Boolean isShowing) {
-                    if (isShowing) {
+                    if (!isShowing) {
+                        return;
+                    }
+                    long start = enterCallback("Window shown");
+                    try {
+                        metrics.increment(DialogManagerMetrics.Counter.WINDOW_EVENTS);
                         window.showingProperty().removeListener(this);
-                        // Re-apply position after show in case QuPath overrode it
                         if (savedState != null) {
+                            restoreWindowPositionWithValidation(window, savedState);
+                            // Re-apply position after show in case QuPath overrode it
                             logger.debug("Re-applying position for '{}' after show", windowId);
-                            Platform.runLater(() -> restoreWindowPositionWithValidation(window, savedState));
+                            Platform.runLater(() -> reapplyPosition(window, savedState));
+                        }
+                        DialogState trackedState = startTracking(window);
+                        if (trackedState != null) {
+                            setDialogState(trackedState);
                         }
-                        startTracking(window);
+                    } finally {
+                        exitCallback(start);
                     }
                 }
             });
         }
+
+        if (event.shouldCommit()) {
+            event.windowId = windowId;
+            event.savedPositionFound = savedState != null;
+            event.alreadyShowing = showing;
+            event.commit();
+        }
+        return state;
     }
 
-    private void onWindowRemoved(Window window) {
-        WindowTracker tracker = trackedWindows.remove(window);
-        if (tracker != null) {
-            tracker.detach();
-
-            // Save final position with current scale factors
-            DialogState finalState = createStateFromWindow(window).withOpenStatus(false);
-            String windowId = finalState.windowId();
-
-            // Only save state for windows with proper titles, not hash-code fallbacks
-            // Hash-code fallbacks (like "@926214965") are not useful for persistence
-            // since they change every time a window is created
-            if (windowId != null && !windowId.startsWith("@")) {
-                DialogPositionPreferences.save(finalState);
-                logger.debug("Window removed and state saved: {}", windowId);
-            } else {
-                logger.trace("Window removed but not saved (fallback ID): {}", windowId);
-            }
+    private void reapplyPosition(Window window, DialogState savedState) {
+        long start = enterCallback("Reapply position");
+        try {
+            restoreWindowPositionWithValidation(window, savedState);
+        } finally {
+            exitCallback(start);
+        }
+    }
 
-            // Update our observable list
-            updateDialogState(finalState);
+    /**
+     * Handle a window removed from the window list, saving its final state if tracked.
+     *
+     * @return The final state for the state list, or null if the window wasn't tracked
+     */
+    private DialogState onWindowRemoved(Window window) {
+        WindowTracker tracker = trackedWindows.remove(window);
+        if (tracker == null) {
+            return null;
         }
+        tracker.detach();
+
+        // Save final position with current scale factors
+        DialogState finalState = createStateFromWindow(window).withOpenStatus(false);
+        DialogPositionPreferences.save(finalState);
+        logger.debug("Window removed and state saved: {}", finalState.windowId());
+        return finalState;
     }
 
     private boolean shouldTrackWindow(Window window) {
@@ -529,42 +926,40 @@ public final class DialogPositionManager {
         return title != null && targetedTitles.contains(title);
     }
 
-    private void startTracking(Window window) {
+    /**
+     * Attach a tracker to a showing window whose saved position has been restored.
+     *
+     * @return The window's current state for the state list, or null if it was already tracked
+     */
+    private DialogState startTracking(Window window) {
         if (trackedWindows.containsKey(window)) {
-            return; // Already tracking
+            return null; // Already tracking
         }
 
-        String windowId = getWindowId(window);
-        logger.debug("Starting to track window: {}", windowId);
-
-        // Check if we have a saved position for this window
-        Map<String, DialogState> saved = DialogPositionPreferences.loadAll();
-        DialogState savedState = saved.get(windowId);
-
-        if (savedState != null) {
-            restoreWindowPositionWithValidation(window, savedState);
-        }
+        logger.debug("Starting to track window: {}", getWindowId(window));
 
         // Create and attach tracker
         WindowTracker tracker = new WindowTracker(window);
         trackedWindows.put(window, tracker);
 
-        // Update our state list
-        DialogState currentState = createStateFromWindow(window).withOpenStatus(true);
-        updateDialogState(currentState);
+        return createStateFromWindow(window).withOpenStatus(true);
     }
 
     /**
      * Restore window position with validation for HiDPI and multi-monitor scenarios.
      */
     private void restoreWindowPositionWithValidation(Window window, DialogState savedState) {
+        DialogManagerEvents.PositionRestored event = new DialogManagerEvents.PositionRestored();
+        event.begin();
+
         // Find the best screen to restore to
-        Screen targetScreen = findBestScreenForState(savedState);
-        double currentScaleX = targetScreen.getOutputScaleX();
-        double currentScaleY = targetScreen.getOutputScaleY();
+        ScreenTopology topology = ScreenTopology.current();
+        int targetScreen = findBestScreenForState(topology, savedState);
+        double currentScaleX = topology.getScaleX(targetScreen);
+        double currentScaleY = topology.getScaleY(targetScreen);
 
         // Check if the saved position is still valid on current screen configuration
-        boolean positionValid = isPositionSufficientlyVisible(
+        boolean positionValid = isPositionSufficientlyVisible(topology,
                 savedState.x(), savedState.y(), savedState.width(), savedState.height());
 
         // Check if scale factors have changed significantly
@@ -578,6 +973,10 @@ public final class DialogPositionManager {
                     currentScaleX, currentScaleY);
         }
 
+        metrics.increment(positionValid
+                ? DialogManagerMetrics.Counter.RESTORES_APPLIED
+                : DialogManagerMetrics.Counter.RESTORES_REJECTED);
+
         if (positionValid && !scaleChanged) {
             // Position is valid and scale hasn't changed - restore directly
             restoreWindowPosition(window, savedState);
@@ -592,69 +991,53 @@ public final class DialogPositionManager {
             // Position is off-screen or invalid - center on best available screen
             logger.info("Saved position for {} is invalid or off-screen, centering on {}",
                     savedState.windowId(),
-                    targetScreen == Screen.getPrimary() ? "primary screen" : "available screen");
-            centerWindowOnScreen(window, targetScreen);
+                    targetScreen == topology.getPrimaryIndex() ? "primary screen" : "available screen");
+            centerWindowOnScreen(window, topology.getVisualBounds(targetScreen));
+        }
+
+        if (event.shouldCommit()) {
+            event.windowId = savedState.windowId();
+            event.applied = positionValid;
+            event.scaleChanged = scaleChanged;
+            event.screenIndex = targetScreen;
+            event.commit();
         }
     }
 
     /**
      * Find the best screen to restore a window to based on saved state.
+     *
+     * @return The index of the screen in the topology
      */
-    private Screen findBestScreenForState(DialogState state) {
-        List<Screen> screens = Screen.getScreens();
-
+    static int findBestScreenForState(ScreenTopology topology, DialogState state) {
         // Try to find the same screen index
-        if (state.screenIndex() >= 0 && state.screenIndex() < screens.size()) {
-            Screen savedScreen = screens.get(state.screenIndex());
+        if (state.screenIndex() >= 0 && state.screenIndex() < topology.size()) {
             // Verify the screen has similar characteristics (rough position match)
-            Rectangle2D bounds = savedScreen.getVisualBounds();
+            Rectangle2D bounds = topology.getVisualBounds(state.screenIndex());
             if (bounds.contains(state.x(), state.y()) ||
                 bounds.intersects(state.x(), state.y(), state.width(), state.height())) {
-                return savedScreen;
+                return state.screenIndex();
             }
         }
 
-        // Try to find a screen that contains the saved position
-        for (Screen screen : screens) {
-            if (screen.getVisualBounds().contains(state.x(), state.y())) {
-                return screen;
-            }
-        }
-
-        // Try to find a screen that intersects with the saved bounds
-        List<Screen> intersecting = Screen.getScreensForRectangle(
-                state.x(), state.y(), state.width(), state.height());
-        if (!intersecting.isEmpty()) {
-            return intersecting.get(0);
+        // Otherwise the screen containing the saved position, or failing that
+        // the one overlapping the saved bounds most
+        int best = topology.bestScreenFor(state.x(), state.y(), state.width(), state.height());
+        if (best >= 0) {
+            return best;
         }
 
         // Fall back to primary
-        return Screen.getPrimary();
+        return topology.getPrimaryIndex();
     }
 
     /**
      * Check if a position has sufficient visibility on any screen.
      * Requires at least MIN_VISIBLE_PIXELS to be within screen bounds.
      */
-    private boolean isPositionSufficientlyVisible(double x, double y, double width, double height) {
-        for (Screen screen : Screen.getScreens()) {
-            Rectangle2D bounds = screen.getVisualBounds();
-
-            // Calculate how much of the window overlaps with this screen
-            double overlapLeft = Math.max(x, bounds.getMinX());
-            double overlapRight = Math.min(x + width, bounds.getMaxX());
-            double overlapTop = Math.max(y, bounds.getMinY());
-            double overlapBottom = Math.min(y + height, bounds.getMaxY());
-
-            double overlapWidth = overlapRight - overlapLeft;
-            double overlapHeight = overlapBottom - overlapTop;
-
-            // Check if there's sufficient overlap
-            if (overlapWidth >= MIN_VISIBLE_PIXELS && overlapHeight >= MIN_VISIBLE_PIXELS) {
-                return true;
-            }
-        }
-        return false;
+    private static boolean isPositionSufficientlyVisible(ScreenTopology topology,
+                                                         double x, double y, double width, double height) {
+        return topology.isSufficientlyVisible(x, y, width, height, MIN_VISIBLE_PIXELS);
     }
 
     private void restoreWindowPosition(Window window, DialogState state) {
@@ -668,8 +1051,7 @@ public final class DialogPositionManager {
         }
     }
 
-    private void centerWindowOnScreen(Window window, Screen screen) {
-        Rectangle2D bounds = screen.getVisualBounds();
+    private void centerWindowOnScreen(Window window, Rectangle2D bounds) {
         double windowWidth = window.getWidth();
         double windowHeight = window.getHeight();
 
@@ -677,8 +1059,9 @@ public final class DialogPositionManager {
         if (windowWidth <= 0) windowWidth = 400;
         if (windowHeight <= 0) windowHeight = 300;
 
-        double centerX = bounds.getMinX() + (bounds.getWidth() - windowWidth) / 2;
-        double centerY = bounds.getMinY() + (bounds.getHeight() - windowHeight) / 2;
+        // Keep the title bar on screen if the window is larger than the screen
+        double centerX = Math.max(bounds.getMinX(), bounds.getMinX() + (bounds.getWidth() - windowWidth) / 2);
+        double centerY = Math.max(bounds.getMinY(), bounds.getMinY() + (bounds.getHeight() - windowHeight) / 2);
 
         window.setX(centerX);
         window.setY(centerY);
@@ -695,21 +1078,20 @@ public final class DialogPositionManager {
         double scaleX = 1.0;
         double scaleY = 1.0;
 
-        List<Screen> screens = Screen.getScreensForRectangle(
+        ScreenTopology topology = ScreenTopology.current();
+        int index = topology.maxOverlapScreen(
                 window.getX(), window.getY(), window.getWidth(), window.getHeight());
-        if (!screens.isEmpty()) {
-            Screen primaryScreen = screens.get(0);
-            screenIndex = Screen.getScreens().indexOf(primaryScreen);
-            if (screenIndex < 0) screenIndex = 0;
+        if (index >= 0) {
+            screenIndex = index;
 
             // Capture the output scale factors for this screen
-            scaleX = primaryScreen.getOutputScaleX();
-            scaleY = primaryScreen.getOutputScaleY();
+            scaleX = topology.getScaleX(index);
+            scaleY = topology.getScaleY(index);
         } else {
             // Window not on any screen - use primary screen's scale
-            Screen primary = Screen.getPrimary();
-            scaleX = primary.getOutputScaleX();
-            scaleY = primary.getOutputScaleY();
+            int primary = topology.getPrimaryIndex();
+            scaleX = topology.getScaleX(primary);
+            scaleY = topology.getScaleY(primary);
         }
 
         return new DialogState(
@@ -728,34 +1110,307 @@ public final class DialogPositionManager {
     }
 
     private String getWindowId(Window window) {
-        if (window instanceof Stage stage) {
-            String title = stage.getTitle();
-            if (title != null && !title.isBlank()) {
-                // Normalize title: remove dynamic parts like file paths or image names
-                // For now, just use the title as-is
-                return title.trim();
+        String title = window instanceof Stage stage ? stage.getTitle() : null;
+        WindowIdentity cached = windowIdentities.get(window);
+        if (cached != null && Objects.equals(cached.title(), title)) {
+            return cached.windowId();
+        }
+        String windowId;
+        if (title != null && !title.isBlank()) {
+            // Normalize title: remove dynamic parts like file paths or image names
+            windowId = titleNormalizer.normalize(title.trim());
+        } else {
+            // Identify untitled windows by their structure, which is the same every time
+            windowId = WindowKeys.structuralKey(window, getOwnerId(window));
+            if (window.getScene() == null) {
+                // Not built yet, so the key is incomplete; work it out again next time
+                return windowId;
+            }
+        }
+        windowIdentities.put(window, new WindowIdentity(title, windowId));
+        return windowId;
+    }
+
+    private String getOwnerId(Window window) {
+        Window owner = window instanceof Stage stage ? stage.getOwner() : null;
+        if (owner == null) {
+            return null;
+        }
+        return owner == mainStage ? MAIN_WINDOW_ID : getWindowId(owner);
+    }
+
+    private void indexWindow(String windowId, Window window) {
+        windowsById.computeIfAbsent(windowId, k -> new LinkedHashSet<>(2)).add(window);
+    }
+
+    private void unindexWindow(String windowId, Window window) {
+        Set<Window> windows = windowsById.get(windowId);
+        if (windows != null) {
+            windows.remove(window);
+            if (windows.isEmpty()) {
+                windowsById.remove(windowId);
             }
         }
-        // Fallback to class name + hash
-        return window.getClass().getSimpleName() + "@" + System.identityHashCode(window);
+    }
+
+    /**
+     * Start timing a manager callback on the FX application thread. Callbacks that run
+     * inside another one, e.g. a position listener fired by a restore, are part of the
+     * outer callback's time.
+     *
+     * @param name Name of the callback, as reported by the {@link FxStallWatchdog}
+     * @return The start time to pass to {@link #exitCallback(long)}
+     */
+    private long enterCallback(String name) {
+        if (callbackDepth++ != 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        watchdog.enter(name, start);
+        return start;
+    }
+
+    /**
+     * Finish timing a callback started with {@link #enterCallback(String)}.
+     */
+    private void exitCallback(long start) {
+        if (--callbackDepth == 0) {
+            long duration = System.nanoTime() - start;
+            metrics.record(DialogManagerMetrics.Timer.FX_CALLBACKS, duration);
+            watchdog.exit(duration);
+        }
     }
 
     private void updateDialogState(DialogState newState) {
+        Platform.runLater(() -> setDialogState(newState));
+    }
+
+    /**
+     * Replace the entry for this window ID in the observable list.
+     * Must be called on the FX application thread.
+     */
+    private void setDialogState(DialogState newState) {
+        dialogStates.put(newState);
+        recordScreenLayout(newState);
+    }
+
+    /**
+     * Record a state against the current screen configuration, unless it belongs to a
+     * window whose position is never saved.
+     * <p>
+     * Nothing is recorded while a screen change is settling: windows are then being moved
+     * by the OS rather than the user, and recording those moves would overwrite the layout
+     * that is about to be restored. {@link #onScreensSettled()} records the open windows
+     * once the change has been handled.
+     */
+    private void recordScreenLayout(DialogState state) {
+        if (pendingRemovedScreens == null && !DialogPositionPreferences.isIgnoredWindow(state.windowId())) {
+            screenLayouts.recordWindow(getLayoutFingerprint(), state);
+        }
+    }
+
+    /**
+     * Record the main window against the current screen configuration, unless a screen
+     * change is settling or its geometry isn't worth restoring.
+     */
+    private void recordMainWindow() {
+        // Maximized, iconified and full-screen geometry isn't worth restoring
+        if (pendingRemovedScreens == null && !mainStage.isIconified()
+                && !mainStage.isMaximized() && !mainStage.isFullScreen()) {
+            screenLayouts.recordMainWindow(getLayoutFingerprint(), createMainWindowState());
+        }
+    }
+
+    /**
+     * Get the fingerprint of the screen configuration that positions are recorded against.
+     */
+    private String getLayoutFingerprint() {
+        if (layoutFingerprint == null) {
+            layoutFingerprint = computeScreenFingerprint();
+        }
+        return layoutFingerprint;
+    }
+
+    /**
+     * Get the positions remembered for a screen configuration.
+     *
+     * @return The layout, or null if the configuration has not been seen
+     */
+    WindowLayout getScreenLayout(String fingerprint) {
+        return screenLayouts.getLayout(fingerprint);
+    }
+
+    /**
+     * Get the position to restore for a window from the active store.
+     * <p>
+     * The screen layout cache is only consulted if the saved position can no longer be
+     * seen, i.e. it was saved on a different screen configuration, such as before docking
+     * a laptop. Otherwise the store always wins, so that project profiles, workspace
+     * layouts and positions reset from the UI take effect. A window with no saved position
+     * is never restored from the cache.
+     */
+    private DialogState findSavedState(String windowId) {
+        DialogState state = DialogPositionPreferences.get(windowId);
+        if (state == null || isPositionSufficientlyVisible(ScreenTopology.current(),
+                state.x(), state.y(), state.width(), state.height())) {
+            return state;
+        }
+        DialogState cached = screenLayouts.getWindow(computeScreenFingerprint(), windowId);
+        if (cached != null) {
+            logVerbose("Saved position for '{}' is off-screen, using the one last seen on this screen configuration",
+                    windowId);
+            return cached;
+        }
+        return state;
+    }
+
+    private void onMainWindowMoved() {
+        if (mainWindowUpdatePending) {
+            return;
+        }
+        mainWindowUpdatePending = true;
         Platform.runLater(() -> {
-            // Remove existing entry for this window ID
-            dialogStates.removeIf(s -> s.windowId().equals(newState.windowId()));
-            // Add the new state
-            dialogStates.add(newState);
+            long start = enterCallback("Main window moved");
+            try {
+                mainWindowUpdatePending = false;
+                recordMainWindow();
+            } finally {
+                exitCallback(start);
+            }
         });
     }
 
+    private DialogState createMainWindowState() {
+        return new DialogState(MAIN_WINDOW_ID, mainStage.getTitle(),
+                mainStage.getX(), mainStage.getY(), mainStage.getWidth(), mainStage.getHeight());
+    }
+
+    private void onScreenTopologyChanged(ScreenTopology previous, ScreenTopology current) {
+        List<Rectangle2D> removed = previous == null ? List.of() : previous.boundsMissingFrom(current);
+        List<Rectangle2D> added = previous == null ? List.of() : current.boundsMissingFrom(previous);
+        logVerbose("Screen configuration changed: {} screen(s) removed, {} added", removed.size(), added.size());
+
+        // Plugging or unplugging a monitor can report several changes in a row, and the
+        // OS may still be moving windows; handle them together in the next pulse
+        if (pendingRemovedScreens == null) {
+            // Positions recorded up to now were seen on the old configuration
+            if (layoutFingerprint == null && previous != null) {
+                layoutFingerprint = previous.getFingerprint();
+            }
+            pendingRemovedScreens = new ArrayList<>(removed);
+            Platform.runLater(this::onScreensSettled);
+        } else {
+            pendingRemovedScreens.addAll(removed);
+        }
+    }
+
+    private void onScreensSettled() {
+        long start = enterCallback("Screens settled");
+        try {
+            List<Rectangle2D> removed = pendingRemovedScreens;
+            ScreenTopology topology = ScreenTopology.current();
+
+            // Still pending, so the moves made here aren't recorded until they are all done
+            try {
+                WindowLayout layout = screenLayouts.getLayout(topology.getFingerprint());
+                if (layout == null) {
+                    logVerbose("Screen configuration not seen before ({} screens)", topology.size());
+                } else {
+                    logger.info("Screen configuration changed, restoring the layout last used with it");
+                    applyLayout(layout);
+                }
+                if (!removed.isEmpty()) {
+                    relocateFromRemovedScreens(topology, removed);
+                }
+            } finally {
+                pendingRemovedScreens = null;
+                layoutFingerprint = topology.getFingerprint();
+            }
+            recordOpenWindows();
+            screenLayoutWriter.schedule();
+        } finally {
+            exitCallback(start);
+        }
+    }
+
+    /**
+     * Move open windows that were on a removed screen and can no longer be reached.
+     * <p>
+     * Only windows whose bounds intersect a removed screen are checked. Those that are
+     * no longer sufficiently visible are centered on the nearest remaining screen. A modal
+     * dialog blocks the windows that could otherwise be used to move it, so it is also
+     * moved unless the middle of its title bar is on a screen.
+     */
+    private void relocateFromRemovedScreens(ScreenTopology topology, List<Rectangle2D> removed) {
+        int moved = 0;
+        for (Window window : Window.getWindows()) {
+            if (!(window instanceof Stage stage) || !stage.isShowing()) {
+                continue;
+            }
+            double x = stage.getX();
+            double y = stage.getY();
+            double w = stage.getWidth();
+            double h = stage.getHeight();
+            if (!intersectsAny(removed, x, y, w, h)) {
+                continue;
+            }
+            boolean reachable = isPositionSufficientlyVisible(topology, x, y, w, h)
+                    && (stage.getModality() == Modality.NONE
+                            || topology.screenAt(x + w / 2, y + TITLE_BAR_OFFSET) >= 0);
+            if (!reachable) {
+                int target = topology.bestScreenFor(x, y, w, h);
+                if (target < 0) {
+                    target = topology.getPrimaryIndex();
+                }
+                centerWindowOnScreen(stage, topology.getVisualBounds(target));
+                logger.info("Moved '{}' from a disconnected screen", stage.getTitle());
+                moved++;
+            }
+        }
+        logVerbose("Relocated {} window(s) after {} screen(s) were removed", moved, removed.size());
+    }
+
+    /**
+     * Record where the main window and every open tracked dialog are now, against the
+     * current screen configuration.
+     */
+    private void recordOpenWindows() {
+        for (DialogState state : captureLayout().windows().values()) {
+            recordScreenLayout(state);
+        }
+        if (mainStage != null) {
+            recordMainWindow();
+        }
+    }
+
+    private static boolean intersectsAny(List<Rectangle2D> rects, double x, double y, double width, double height) {
+        for (Rectangle2D rect : rects) {
+            if (rect.intersects(x, y, width, height)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Inner class that attaches listeners to a window to track position changes.
+     * <p>
+     * Position and size events are coalesced: the first event queues a single update
+     * for the next pulse, and any further events before it runs are dropped. The update
+     * reads the window's geometry when it runs, so only the final position is pushed.
      */
     private class WindowTracker {
         private final Window window;
         private final InvalidationListener positionListener;
         private final ChangeListener<Boolean> showingListener;
+        private final InvalidationListener titleListener;
+
+        // ID under which this window is currently indexed in windowsById
+        private String windowId;
+
+        // True while an update is queued for the next pulse (FX thread only)
+        private boolean updatePending = false;
+        private boolean detached = false;
 
         WindowTracker(Window window) {
             this.window = window;
@@ -773,13 +1428,32 @@ public final class DialogPositionManager {
             this.showingListener = (obs, wasShowing, isShowing) -> {
                 if (!isShowing) {
                     // Window is hiding - save state
-                    saveCurrentState();
+                    long start = enterCallback("Window hidden");
+                    try {
+                        metrics.increment(DialogManagerMetrics.Counter.WINDOW_EVENTS);
+                        saveCurrentState();
+                    } finally {
+                        exitCallback(start);
+                    }
                 }
             };
             window.showingProperty().addListener(showingListener);
+
+            // Keep the reverse index in sync with the title
+            this.windowId = getWindowId(window);
+            indexWindow(windowId, window);
+            this.titleListener = obs -> onTitleChanged();
+            if (window instanceof Stage stage) {
+                stage.titleProperty().addListener(titleListener);
+            }
         }
 
         void detach() {
+            detached = true;
+            if (window instanceof Stage stage) {
+                stage.titleProperty().removeListener(titleListener);
+            }
+            unindexWindow(windowId, window);
             window.xProperty().removeListener(positionListener);
             window.yProperty().removeListener(positionListener);
             window.widthProperty().removeListener(positionListener);
@@ -787,19 +1461,62 @@ public final class DialogPositionManager {
             window.showingProperty().removeListener(showingListener);
         }
 
+        private void onTitleChanged() {
+            long start = enterCallback("Window title");
+            try {
+                metrics.increment(DialogManagerMetrics.Counter.WINDOW_EVENTS);
+                String newId = getWindowId(window);
+                if (!newId.equals(windowId)) {
+                    unindexWindow(windowId, window);
+                    windowId = newId;
+                    indexWindow(windowId, window);
+                }
+            } finally {
+                exitCallback(start);
+            }
+        }
+
         private void onPositionChanged() {
-            // Update our observable list (debouncing would be nice here, but keep it simple)
-            DialogState state = createStateFromWindow(window);
-            updateDialogState(state);
+            long start = enterCallback("Window position");
+            DialogManagerEvents.PositionChanged event = new DialogManagerEvents.PositionChanged();
+            event.begin();
+            boolean coalesced = updatePending;
+            try {
+                metrics.increment(DialogManagerMetrics.Counter.POSITION_EVENTS);
+                if (coalesced) {
+                    metrics.increment(DialogManagerMetrics.Counter.POSITION_EVENTS_COALESCED);
+                    return;
+                }
+                updatePending = true;
+                Platform.runLater(this::pushPendingUpdate);
+            } finally {
+                if (event.shouldCommit()) {
+                    event.windowId = windowId;
+                    event.coalesced = coalesced;
+                    event.commit();
+                }
+                exitCallback(start);
+            }
         }
 
-        private void saveCurrentState() {
-            DialogState state = createStateFromWindow(window).withOpenStatus(false);
-            // Only save state for windows with proper titles, not hash-code fallbacks
-            if (state.windowId() != null && !state.windowId().startsWith("@")) {
-                DialogPositionPreferences.save(state);
+        private void pushPendingUpdate() {
+            long start = enterCallback("Position update");
+            try {
+                updatePending = false;
+                if (detached) {
+                    // The window closed in the meantime; onWindowRemoved has recorded its final state
+                    metrics.increment(DialogManagerMetrics.Counter.POSITION_UPDATES_DROPPED);
+                    return;
+                }
+                setDialogState(createStateFromWindow(window));
+            } finally {
+                exitCallback(start);
             }
         }
+
+        private void saveCurrentState() {
+            DialogPositionPreferences.save(createStateFromWindow(window).withOpenStatus(false));
+        }
     }
 
     // ==================== Main Window Position ====================
@@ -811,16 +1528,7 @@ public final class DialogPositionManager {
      * a different fingerprint.
      */
     public static String computeScreenFingerprint() {
-        List<Screen> screens = Screen.getScreens();
-        StringBuilder sb = new StringBuilder();
-        sb.append(screens.size()).append(":");
-        for (Screen s : screens) {
-            Rectangle2D b = s.getBounds();
-            sb.append(String.format("%.0fx%.0f@%.0f,%.0f/%.2fx%.2f;",
-                    b.getWidth(), b.getHeight(), b.getMinX(), b.getMinY(),
-                    s.getOutputScaleX(), s.getOutputScaleY()));
-        }
-        return sb.toString();
+        return ScreenTopology.current().getFingerprint();
     }
 
     /**
@@ -849,6 +1557,8 @@ public final class DialogPositionManager {
      *   <li>Screen fingerprint must match exactly</li>
      *   <li>Saved position must be sufficiently visible on current screens</li>
      * </ol>
+     * If the fingerprint doesn't match but the main window has been seen on the current
+     * screen configuration before, it is moved back to where it was then instead.
      *
      * @return true if position was restored, false if skipped for any reason
      */
@@ -886,6 +1596,9 @@ public final class DialogPositionManager {
 
         // Check 3: screen fingerprint must match exactly
         String currentFingerprint = computeScreenFingerprint();
+        if (!currentFingerprint.equals(savedFingerprint) && restoreMainWindowForScreens(currentFingerprint)) {
+            return true;
+        }
         if (!currentFingerprint.equals(savedFingerprint)) {
             logger.info("Screen configuration changed since main window position was saved -- disabling restore");
             logger.info("  Saved:   {}", savedFingerprint);
@@ -895,7 +1608,7 @@ public final class DialogPositionManager {
         }
 
         // Check 4: position must be visible on current screens
-        if (!isPositionSufficientlyVisible(x, y, w, h)) {
+        if (!isPositionSufficientlyVisible(ScreenTopology.current(), x, y, w, h)) {
             logger.info("Main window saved position ({},{} {}x{}) is not sufficiently visible -- disabling",
                     x, y, w, h);
             DialogPositionPreferences.setMainWindowRestoreEnabled(false);
@@ -911,4 +1624,36 @@ public final class DialogPositionManager {
         return true;
     }
 
+    /**
+     * Move the main window to where it was last seen on a screen configuration.
+     *
+     * @return true if a visible position was known and applied
+     */
+    private boolean restoreMainWindowForScreens(String fingerprint) {
+        WindowLayout layout = screenLayouts.getLayout(fingerprint);
+        if (layout == null || !applyMainWindowState(layout.mainWindow())) {
+            return false;
+        }
+        logger.info("Restored main window position last used with this screen configuration");
+        return true;
+    }
+
+    /**
+     * Move the main window to a state, if the state is valid and sufficiently visible.
+     *
+     * @return true if the main window was moved
+     */
+    private boolean applyMainWindowState(DialogState main) {
+        if (main == null || !main.hasValidPosition() || !main.hasValidSize()
+                || !isPositionSufficientlyVisible(ScreenTopology.current(),
+                        main.x(), main.y(), main.width(), main.height())) {
+            return false;
+        }
+        mainStage.setX(main.x());
+        mainStage.setY(main.y());
+        mainStage.setWidth(main.width());
+        mainStage.setHeight(main.height());
+        return true;
+    }
+
 }
@@ -5,33 +5,63 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
-import javafx.stage.Modality;
+import javafx.beans.property.StringProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import qupath.lib.gui.UserDirectoryManager;
 import qupath.lib.gui.prefs.PathPrefs;
 
-import java.util.Collections;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
- * Handles persistence of dialog positions using QuPath's preference system.
+ * Handles persistence of dialog positions.
  * <p>
- * Dialog states are serialized to JSON and stored in a single preference entry.
- * This class handles serialization/deserialization and provides methods to
- * load, save, and clear stored positions.
+ * Saved states are held by a {@link DialogStateStore}. By default this is a
+ * {@link PreferencesDialogStateStore}, which keeps them as compact JSON in Java
+ * preferences; if the {@code dialogManager.fileStorage} preference is set, a
+ * {@link FileDialogStateStore} keeps them in an append-only journal file under the QuPath
+ * user directory instead. The store is chosen when the extension is installed, and can be
+ * replaced with {@link #setStore(DialogStateStore)}, e.g. by an in-memory store for tests.
+ * <p>
+ * This class decides what is persisted - ignored windows never are - and
+ * when. Writes are not immediate: changes are coalesced and flushed to the store on a
+ * background thread. Call {@link #flush()} to force pending changes out, e.g. on shutdown.
+ * <p>
+ * The main window position is always kept in preferences.
  */
 public final class DialogPositionPreferences {
 
     private static final Logger logger = LoggerFactory.getLogger(DialogPositionPreferences.class);
 
-    private static final String PREF_KEY = "dialogManager.positions";
     private static final String MAIN_WINDOW_KEY = "dialogManager.mainWindow";
     private static final String MAIN_WINDOW_ENABLED_KEY = "dialogManager.mainWindow.enabled";
+    private static final String FLUSH_DELAY_KEY = "dialogManager.flushDelayMillis";
+    private static final String FILE_STORAGE_KEY = "dialogManager.fileStorage";
+    private static final String PROJECT_PROFILES_KEY = "dialogManager.projectProfiles";
+    private static final String TITLE_RULES_KEY = "dialogManager.titleRules";
+    private static final String STALL_WATCHDOG_KEY = "dialogManager.stallWatchdog";
+    private static final String STALL_BUDGET_KEY = "dialogManager.stallBudgetMillis";
+
+    /**
+     * Name of the directory within the QuPath user directory for files written by this extension.
+     */
+    private static final String STORAGE_DIRECTORY = "dialog-manager";
+
+    /**
+     * Default window within which position saves are coalesced into a single write.
+     */
+    private static final int DEFAULT_FLUSH_DELAY_MILLIS = 500;
 
-    // Note: No pretty printing to stay within Java Preferences 8192 char limit
     private static final Gson GSON = new GsonBuilder().create();
 
     /**
@@ -42,8 +72,30 @@ public final class DialogPositionPreferences {
             "Quit QuPath"
     );
 
-    // Property for the raw JSON string storage
-    private static ObjectProperty<String> positionsJsonProperty;
+    // Coalescing window for background writes
+    private static IntegerProperty flushDelayProperty;
+
+    // Whether positions are kept in the journal file instead of preferences
+    private static BooleanProperty fileStorageProperty;
+
+    // Whether each project gets its own layout profile
+    private static BooleanProperty projectProfilesProperty;
+
+    // Rules mapping window titles to window IDs, one per line
+    private static StringProperty titleRulesProperty;
+
+    // Whether the FX thread stall watchdog runs, and its budget
+    private static BooleanProperty stallWatchdogProperty;
+    private static IntegerProperty stallBudgetProperty;
+
+    // The store currently in use; null until first needed or set
+    private static volatile DialogStateStore store;
+    // Registers the preference shards, so it is created at most once. Guarded by the class lock.
+    private static PreferencesDialogStateStore preferencesStore;
+
+    private static final PersistenceScheduler scheduler = new PersistenceScheduler(
+            DialogPositionPreferences::flush,
+            () -> flushDelayProperty == null ? DEFAULT_FLUSH_DELAY_MILLIS : flushDelayProperty.get());
 
     // Main window position + screen fingerprint (separate from dialog positions)
     private static ObjectProperty<String> mainWindowJsonProperty;
@@ -54,19 +106,13 @@ public final class DialogPositionPreferences {
     }
 
     /**
-     * Initialize the preference property. Must be called during extension installation.
+     * Initialize the preference properties. Must be called during extension installation.
      * <p>
-     * This also performs automatic cleanup of any garbage fallback entries that may
-     * have accumulated from previous versions.
-     */
-    public static void initialize() {
-        if (positionsJsonProperty == null) {
-            positionsJsonProperty = PathPrefs.createPersistentPreference(
-                    PREF_KEY,
-                    "{}",
-                    s -> s,
-                    s -> s
-            );
+     * This does not open a store; that happens on first use, or when one is installed
+     * with {@link #setStore(DialogStateStore)}.
+     */
+    public static synchronized void initialize() {
+        if (flushDelayProperty == null) {
             mainWindowJsonProperty = PathPrefs.createPersistentPreference(
                     MAIN_WINDOW_KEY,
                     "",
@@ -75,113 +121,353 @@ public final class DialogPositionPreferences {
             );
             mainWindowEnabledProperty = PathPrefs.createPersistentPreference(
                     MAIN_WINDOW_ENABLED_KEY, false);
+            fileStorageProperty = PathPrefs.createPersistentPreference(
+                    FILE_STORAGE_KEY, false);
+            projectProfilesProperty = PathPrefs.createPersistentPreference(
+                    PROJECT_PROFILES_KEY, false);
+            titleRulesProperty = PathPrefs.createPersistentPreference(
+                    TITLE_RULES_KEY, TitleNormalizer.DEFAULT_RULES);
+            stallWatchdogProperty = PathPrefs.createPersistentPreference(
+                    STALL_WATCHDOG_KEY, false);
+            stallBudgetProperty = PathPrefs.createPersistentPreference(
+                    STALL_BUDGET_KEY, FxStallWatchdog.DEFAULT_BUDGET_MILLIS);
+            flushDelayProperty = PathPrefs.createPersistentPreference(
+                    FLUSH_DELAY_KEY, DEFAULT_FLUSH_DELAY_MILLIS);
             logger.debug("DialogPositionPreferences initialized");
+        }
+    }
 
-            // Automatically clean up any garbage fallback entries from previous sessions
-            // This fixes the "Value too long" error caused by accumulated hash-code IDs
-            try {
-                int removed = cleanupFallbackEntries();
-                if (removed > 0) {
-                    logger.info("Automatically cleaned up {} garbage dialog position entries", removed);
+    // --- Store selection ---
+
+    /**
+     * Get the store holding saved states, opening the one selected by preferences
+     * if none has been set.
+     */
+    public static DialogStateStore getStore() {
+        DialogStateStore current = store;
+        if (current == null) {
+            synchronized (DialogPositionPreferences.class) {
+                if (store == null) {
+                    setStore(createConfiguredStore());
                 }
-            } catch (Exception e) {
-                // If cleanup fails, just log and continue - it's not critical
-                logger.warn("Failed to cleanup fallback entries: {}", e.getMessage());
+                current = store;
             }
         }
+        return current;
     }
 
     /**
-     * Load all saved dialog states from preferences.
-     * Handles both the current compact format and the legacy verbose format.
+     * Replace the store holding saved states.
+     * <p>
+     * Pending changes are flushed to the previous store first, and it is closed if it
+     * holds resources. Its states are not copied to the new store.
      *
-     * @return Map of windowId to DialogState, never null
+     * @param newStore The store to use from now on
      */
-    public static Map<String, DialogState> loadAll() {
+    public static synchronized void setStore(DialogStateStore newStore) {
+        Objects.requireNonNull(newStore, "Store must not be null");
+        DialogStateStore previous = store;
+        if (previous == newStore) {
+            return;
+        }
+        if (previous != null) {
+            scheduler.flushNow();
+            closeQuietly(previous);
+        }
+        store = newStore;
+        logger.debug("Dialog positions stored in {}", newStore.getClass().getSimpleName());
+    }
+
+    /**
+     * Create the store selected by preferences: the journal file if file storage is
+     * enabled and the journal can be opened, otherwise preferences.
+     */
+    public static synchronized DialogStateStore createConfiguredStore() {
         initialize();
+        DialogStateStore created = null;
+        if (fileStorageProperty.get()) {
+            // A new journal starts with whatever is saved in preferences
+            created = openFileStore(() -> preferencesStore().snapshot(), false);
+        }
+        if (created == null) {
+            created = preferencesStore();
+        }
+        return created;
+    }
+
+    private static synchronized PreferencesDialogStateStore preferencesStore() {
+        if (preferencesStore == null) {
+            preferencesStore = new PreferencesDialogStateStore();
+        }
+        return preferencesStore;
+    }
+
+    /**
+     * Open the journal store, or return null if it can't be opened.
+     *
+     * @param initial States for a new journal, or to replace the journal's contents
+     * @param replace Whether to replace existing journal contents with {@code initial}
+     */
+    private static DialogStateStore openFileStore(Supplier<Map<String, DialogState>> initial, boolean replace) {
+        Path directory = getStorageDirectory();
+        if (directory == null) {
+            logger.warn("No QuPath user directory set, dialog positions will be stored in preferences");
+            return null;
+        }
         try {
-            String json = positionsJsonProperty.get();
-            if (json == null || json.isBlank() || json.equals("{}")) {
-                return new HashMap<>();
+            return FileDialogStateStore.open(directory, initial, replace);
+        } catch (IOException e) {
+            logger.warn("Unable to open dialog position journal, using preferences: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get the directory within the QuPath user directory used for files written by this
+     * extension, or null if no user directory is set.
+     */
+    static Path getStorageDirectory() {
+        Path userPath = UserDirectoryManager.getInstance().getUserPath();
+        return userPath == null ? null : userPath.resolve(STORAGE_DIRECTORY);
+    }
+
+    private static void closeQuietly(DialogStateStore oldStore) {
+        if (oldStore instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close dialog position store: {}", e.getMessage());
             }
+        }
+    }
 
-            JsonObject root = JsonParser.parseString(json).getAsJsonObject();
-            Map<String, DialogState> result = new HashMap<>();
-            for (var entry : root.entrySet()) {
-                try {
-                    DialogState state = jsonToState(entry.getKey(), entry.getValue().getAsJsonObject());
-                    result.put(entry.getKey(), state);
-                } catch (Exception e) {
-                    logger.debug("Skipping invalid entry '{}': {}", entry.getKey(), e.getMessage());
-                }
+    /**
+     * Whether positions are stored in a journal file under the QuPath user directory
+     * rather than in preferences.
+     */
+    public static boolean isFileStorageEnabled() {
+        initialize();
+        return fileStorageProperty.get();
+    }
+
+    /**
+     * Set whether positions are stored in a journal file under the QuPath user directory
+     * rather than in preferences. The current positions are copied to the new location
+     * and written straight away; the old location is left as it is.
+     */
+    public static synchronized void setFileStorageEnabled(boolean enabled) {
+        initialize();
+        if (fileStorageProperty.get() == enabled) {
+            return;
+        }
+        scheduler.flushNow();
+        Map<String, DialogState> current = getStore().snapshot();
+        DialogStateStore next;
+        if (enabled) {
+            next = openFileStore(() -> current, true);
+            if (next == null) {
+                return;
             }
+        } else {
+            next = preferencesStore();
+            next.clear();
+            current.values().forEach(next::put);
+            next.flush();
+        }
+        fileStorageProperty.set(enabled);
+        setStore(next);
+        logger.info("Dialog positions will be stored in {}", enabled ? "a journal file" : "preferences");
+    }
+
+    /**
+     * Whether each QuPath project keeps its own dialog layout.
+     *
+     * @see ProjectLayoutProfiles
+     */
+    public static boolean isProjectProfilesEnabled() {
+        initialize();
+        return projectProfilesProperty.get();
+    }
 
-            logger.debug("Loaded {} dialog positions from preferences", result.size());
-            return result;
+    /**
+     * Set whether each QuPath project keeps its own dialog layout.
+     * Takes effect the next time the project changes; use
+     * {@link ProjectLayoutProfiles#setEnabled(boolean)} to apply it straight away.
+     */
+    public static void setProjectProfilesEnabled(boolean enabled) {
+        initialize();
+        projectProfilesProperty.set(enabled);
+    }
 
-        } catch (Exception e) {
-            logger.warn("Failed to load dialog positions, returning empty map: {}", e.getMessage());
-            return new HashMap<>();
+    /**
+     * Get the rules that map window titles to window IDs.
+     *
+     * @see TitleNormalizer
+     */
+    public static String getTitleRules() {
+        initialize();
+        return titleRulesProperty.get();
+    }
+
+    /**
+     * Set the rules that map window titles to window IDs.
+     * Use {@link DialogPositionManager#setTitleRules(String)} to apply them to open windows.
+     *
+     * @param rules The rules, or null to restore the defaults
+     */
+    public static void setTitleRules(String rules) {
+        initialize();
+        titleRulesProperty.set(rules == null ? TitleNormalizer.DEFAULT_RULES : rules);
+    }
+
+    /**
+     * Whether the FX thread stall watchdog should run.
+     *
+     * @see FxStallWatchdog
+     */
+    public static boolean isStallWatchdogEnabled() {
+        initialize();
+        return stallWatchdogProperty.get();
+    }
+
+    /**
+     * Set whether the FX thread stall watchdog should run, starting or stopping it.
+     */
+    public static void setStallWatchdogEnabled(boolean enabled) {
+        initialize();
+        stallWatchdogProperty.set(enabled);
+        FxStallWatchdog.getInstance().setEnabled(enabled);
+    }
+
+    /**
+     * Get the time a manager callback may run for before the watchdog reports it.
+     */
+    public static int getStallBudgetMillis() {
+        initialize();
+        return stallBudgetProperty.get();
+    }
+
+    /**
+     * Set the time a manager callback may run for before the watchdog reports it.
+     */
+    public static void setStallBudgetMillis(int millis) {
+        initialize();
+        stallBudgetProperty.set(Math.max(1, millis));
+        FxStallWatchdog.getInstance().setBudgetMillis(millis);
+    }
+
+    // --- Saved dialog states ---
+
+    /**
+     * Load all saved dialog states.
+     * <p>
+     * The returned map is a copy and may be freely modified.
+     *
+     * @return Map of windowId to DialogState, never null
+     */
+    public static Map<String, DialogState> loadAll() {
+        long start = System.nanoTime();
+        Map<String, DialogState> states = new HashMap<>(getStore().snapshot());
+        DialogManagerMetrics.getInstance().recordSince(DialogManagerMetrics.Timer.LOAD_ALL, start);
+        return states;
+    }
+
+    /**
+     * Get the saved state for a single window.
+     *
+     * @param windowId The window ID to look up
+     * @return The saved state, or null if there is none
+     */
+    public static DialogState get(String windowId) {
+        if (windowId == null) {
+            return null;
         }
+        return getStore().get(windowId);
     }
 
     /**
-     * Maximum length for the JSON string to stay under Java Preferences limit (8192 bytes).
-     * Using a conservative limit to allow for encoding overhead.
+     * Get an unmodifiable snapshot of all saved states.
      */
-    private static final int MAX_JSON_LENGTH = 7500;
+    public static Map<String, DialogState> getAll() {
+        long start = System.nanoTime();
+        Map<String, DialogState> states = getStore().snapshot();
+        DialogManagerMetrics.getInstance().recordSince(DialogManagerMetrics.Timer.LOAD_ALL, start);
+        return states;
+    }
 
     /**
-     * Save all dialog states to preferences using compact JSON format.
+     * Replace all saved dialog states. The write itself is deferred to the
+     * background persistence thread; see {@link #flush()}.
      * <p>
-     * Compact format optimizations:
-     * <ul>
-     *     <li>Short key names: w/h/m/si/sx/sy instead of width/height/modality/etc.</li>
-     *     <li>Integer coordinates: no ".0" suffix on position/size values</li>
-     *     <li>Default omission: modality=NONE, screenIndex=0, scale=1.0 are not written</li>
-     *     <li>No redundant title: map key serves as both windowId and title</li>
-     * </ul>
-     * Filters out fallback hash-code based IDs (starting with "@") since these are
-     * not useful for persistence - they change every time a window is created.
+     * Ignored windows are left out.
      *
      * @param states Map of windowId to DialogState
      */
     public static void saveAll(Map<String, DialogState> states) {
-        initialize();
-        try {
-            JsonObject root = new JsonObject();
-            for (var entry : states.entrySet()) {
-                String key = entry.getKey();
-                // Skip hash-code fallback IDs (e.g., "@926214965") - they are not reusable
-                // and cause the preferences to grow unboundedly
-                if (key != null && !key.startsWith("@") && !isIgnoredWindow(key)) {
-                    root.add(key, stateToJson(entry.getValue()));
-                }
+        long start = System.nanoTime();
+        DialogManagerEvents.SaveAll event = new DialogManagerEvents.SaveAll();
+        event.begin();
+        DialogStateStore target = getStore();
+        target.clear();
+        int count = 0;
+        for (var entry : states.entrySet()) {
+            String key = entry.getKey();
+            if (key != null && !isIgnoredWindow(key)) {
+                target.put(entry.getValue());
+                count++;
             }
+        }
+        scheduler.schedule();
+        DialogManagerMetrics.getInstance().recordSince(DialogManagerMetrics.Timer.SAVE_ALL, start);
+        if (event.shouldCommit()) {
+            event.entryCount = count;
+            event.commit();
+        }
+    }
 
-            String json = GSON.toJson(root);
-
-            // Safety check: if JSON is still too long, prune entries
-            if (json.length() > MAX_JSON_LENGTH) {
-                logger.warn("Dialog positions JSON too large ({} chars), pruning entries", json.length());
-                while (json.length() > MAX_JSON_LENGTH && root.size() > 0) {
-                    String firstKey = root.keySet().iterator().next();
-                    root.remove(firstKey);
-                    json = GSON.toJson(root);
-                    logger.debug("Removed dialog position for '{}' to reduce size", firstKey);
-                }
+    /**
+     * Move saved positions to the window IDs that title rules now give them.
+     * <p>
+     * Positions saved before a rule applied are keyed by the full title, which the rule
+     * maps to a different window ID, so they would never be found again. Each is moved to
+     * its new ID, keeping its title. If several titles map to the same ID, or a position is
+     * already saved under it, the first position found is kept and the rest are removed.
+     * Untitled windows are not affected.
+     *
+     * @param normalizer The title rules in use
+     * @return The new window ID for each old one that was moved or removed
+     */
+    static Map<String, String> migrateWindowIds(TitleNormalizer normalizer) {
+        Map<String, String> migrated = new LinkedHashMap<>();
+        if (normalizer.getRuleCount() == 0) {
+            return migrated;
+        }
+        DialogStateStore target = getStore();
+        for (DialogState state : target.snapshot().values()) {
+            String windowId = state.windowId();
+            if (WindowKeys.isStructuralKey(windowId)) {
+                continue;
             }
-
-            positionsJsonProperty.set(json);
-            logger.debug("Saved {} dialog positions to preferences", root.size());
-
-        } catch (Exception e) {
-            logger.error("Failed to save dialog positions: {}", e.getMessage(), e);
+            String normalized = normalizer.normalize(windowId);
+            if (normalized.equals(windowId)) {
+                continue;
+            }
+            if (target.get(normalized) == null && !isIgnoredWindow(normalized)) {
+                target.put(state.withWindowId(normalized));
+            }
+            target.remove(windowId);
+            migrated.put(windowId, normalized);
+        }
+        if (!migrated.isEmpty()) {
+            scheduler.schedule();
+            logger.info("Moved {} saved dialog position(s) to the window IDs given by title rules", migrated.size());
         }
+        return migrated;
     }
 
     /**
      * Save a single dialog state, merging with existing states.
+     * The write itself is deferred to the background persistence thread.
      *
      * @param state The dialog state to save
      */
@@ -190,154 +476,97 @@ public final class DialogPositionPreferences {
             logger.debug("Skipping save for dialog state with empty windowId");
             return;
         }
-        Map<String, DialogState> all = loadAll();
-        all.put(state.windowId(), state);
-        saveAll(all);
+        // Ignored windows are never persisted
+        if (isIgnoredWindow(state.windowId())) {
+            return;
+        }
+        getStore().put(state);
+        scheduler.schedule();
     }
 
     /**
-     * Remove a single dialog state from preferences.
+     * Remove a single saved dialog state.
      *
      * @param windowId The window ID to remove
      * @return true if the state was found and removed
      */
     public static boolean remove(String windowId) {
-        Map<String, DialogState> all = loadAll();
-        DialogState removed = all.remove(windowId);
-        if (removed != null) {
-            saveAll(all);
-            logger.debug("Removed dialog position for: {}", windowId);
-            return true;
+        if (windowId == null || !getStore().remove(windowId)) {
+            return false;
         }
-        return false;
+        scheduler.schedule();
+        logger.debug("Removed dialog position for: {}", windowId);
+        return true;
     }
 
     /**
      * Clear all saved dialog positions.
      */
     public static void clearAll() {
-        initialize();
-        positionsJsonProperty.set("{}");
+        getStore().clear();
+        scheduler.flushNow();
         logger.info("Cleared all saved dialog positions");
     }
 
     /**
-     * Remove fallback hash-code based entries from saved preferences.
+     * Write any pending changes to the store immediately.
      * <p>
-     * This cleans up garbage entries that were created for windows without titles.
-     * These entries use IDs like "@926214965" which are not reusable across sessions.
-     *
-     * @return The number of entries removed
+     * Normally called from the background persistence thread, but safe to call from any
+     * thread. It should be called on shutdown so that no positions are lost.
      */
-    public static int cleanupFallbackEntries() {
-        Map<String, DialogState> all = loadAll();
-        int originalSize = all.size();
-
-        // Remove entries with hash-code fallback IDs
-        all.entrySet().removeIf(entry -> {
-            String key = entry.getKey();
-            return key != null && key.startsWith("@");
-        });
-
-        int removed = originalSize - all.size();
-
-        if (removed > 0) {
-            saveAll(all);
-            logger.info("Cleaned up {} fallback dialog position entries", removed);
+    public static void flush() {
+        DialogStateStore current = store;
+        if (current != null) {
+            long start = System.nanoTime();
+            current.flush();
+            DialogManagerMetrics.getInstance().recordSince(DialogManagerMetrics.Timer.FLUSH, start);
         }
-
-        return removed;
     }
 
     /**
-     * Get an unmodifiable view of all saved states.
+     * Get the window within which saved positions are coalesced before being written.
      */
-    public static Map<String, DialogState> getAll() {
-        return Collections.unmodifiableMap(loadAll());
+    public static int getFlushDelayMillis() {
+        initialize();
+        return flushDelayProperty.get();
     }
 
     /**
-     * Check if a window title is in the ignored list and should not be persisted.
+     * Set the window within which saved positions are coalesced before being written.
+     * A value of 0 writes on the next background tick.
      */
-    public static boolean isIgnoredWindow(String windowId) {
-        return windowId != null && IGNORED_WINDOWS.contains(windowId);
+    public static void setFlushDelayMillis(int millis) {
+        initialize();
+        flushDelayProperty.set(Math.max(0, millis));
     }
 
-    // --- Compact JSON serialization / deserialization ---
-
     /**
-     * Serialize a DialogState to a compact JsonObject.
-     * Only includes non-default values to minimize JSON size.
+     * Whether positions stored in preferences are written with the compact binary
+     * encoding rather than JSON.
      */
-    private static JsonObject stateToJson(DialogState state) {
-        JsonObject obj = new JsonObject();
-        obj.addProperty("x", (int) Math.round(state.x()));
-        obj.addProperty("y", (int) Math.round(state.y()));
-        obj.addProperty("w", (int) Math.round(state.width()));
-        obj.addProperty("h", (int) Math.round(state.height()));
-        // Only include non-default values
-        // Note: modality is not persisted - it's intrinsic to the window type and
-        // will be set correctly when the window is recreated by its owning code
-        if (state.screenIndex() != 0) {
-            obj.addProperty("si", state.screenIndex());
-        }
-        if (state.savedScaleX() != 1.0) {
-            obj.addProperty("sx", state.savedScaleX());
-        }
-        if (state.savedScaleY() != 1.0) {
-            obj.addProperty("sy", state.savedScaleY());
-        }
-        return obj;
+    public static boolean isBinaryEncodingEnabled() {
+        return preferencesStore().isBinaryEncodingEnabled();
     }
 
     /**
-     * Deserialize a JsonObject to a DialogState.
-     * Handles both the current compact format and the legacy verbose format.
+     * Set whether positions stored in preferences are written with the compact binary
+     * encoding rather than JSON. Either format is read regardless of this setting;
+     * changing it rewrites every preference entry in the new format.
      */
-    private static DialogState jsonToState(String windowId, JsonObject obj) {
-        int x = getInt(obj, "x", null, 0);
-        int y = getInt(obj, "y", null, 0);
-        int w = getInt(obj, "w", "width", 0);
-        int h = getInt(obj, "h", "height", 0);
-
-        String modStr = getString(obj, "m", "modality", "NONE");
-        Modality mod = Modality.NONE;
-        try {
-            mod = Modality.valueOf(modStr);
-        } catch (IllegalArgumentException e) {
-            // Keep default
+    public static void setBinaryEncodingEnabled(boolean enabled) {
+        if (isBinaryEncodingEnabled() == enabled) {
+            return;
         }
-
-        int si = getInt(obj, "si", "screenIndex", 0);
-        double sx = getDouble(obj, "sx", "scaleX", 1.0);
-        double sy = getDouble(obj, "sy", "scaleY", 1.0);
-
-        // Legacy format stored title redundantly; use map key as title
-        String title = obj.has("title") ? obj.get("title").getAsString() : windowId;
-
-        return new DialogState(windowId, title, x, y, w, h, mod, false, si,
-                sx > 0 ? sx : 1.0, sy > 0 ? sy : 1.0);
-    }
-
-    /** Get an int from a JsonObject, checking primary key then alternate key. */
-    private static int getInt(JsonObject obj, String key, String altKey, int defaultVal) {
-        if (obj.has(key)) return obj.get(key).getAsInt();
-        if (altKey != null && obj.has(altKey)) return obj.get(altKey).getAsInt();
-        return defaultVal;
-    }
-
-    /** Get a double from a JsonObject, checking primary key then alternate key. */
-    private static double getDouble(JsonObject obj, String key, String altKey, double defaultVal) {
-        if (obj.has(key)) return obj.get(key).getAsDouble();
-        if (altKey != null && obj.has(altKey)) return obj.get(altKey).getAsDouble();
-        return defaultVal;
+        preferencesStore().setBinaryEncodingEnabled(enabled);
+        scheduler.schedule();
+        logger.info("Binary position encoding enabled: {}", enabled);
     }
 
-    /** Get a String from a JsonObject, checking primary key then alternate key. */
-    private static String getString(JsonObject obj, String key, String altKey, String defaultVal) {
-        if (obj.has(key)) return obj.get(key).getAsString();
-        if (altKey != null && obj.has(altKey)) return obj.get(altKey).getAsString();
-        return defaultVal;
+    /**
+     * Check if a window title is in the ignored list and should not be persisted.
+     */
+    public static boolean isIgnoredWindow(String windowId) {
+        return windowId != null && IGNORED_WINDOWS.contains(windowId);
     }
 
     // --- Main Window Position ---
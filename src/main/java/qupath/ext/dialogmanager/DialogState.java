@@ -76,6 +76,14 @@ public record DialogState(
         this(windowId, title, x, y, width, height, modality, isCurrentlyOpen, screenIndex, 1.0, 1.0);
     }
 
+    /**
+     * Create a copy saved under a different window ID, keeping the title.
+     */
+    public DialogState withWindowId(String newWindowId) {
+        return new DialogState(newWindowId, title, x, y, width, height, modality, isCurrentlyOpen,
+                screenIndex, savedScaleX, savedScaleY);
+    }
+
     /**
      * Create an updated copy with new position values.
      */
@@ -0,0 +1,321 @@
+package qupath.ext.dialogmanager;
+
+import javafx.stage.Modality;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding for a map of dialog states, stored as Base64 text.
+ * <p>
+ * Encoded values start with {@value #PREFIX} so they can be told apart from JSON.
+ * The layout is:
+ * <ul>
+ *     <li>Word dictionary: every distinct space-separated word used in the windowIds</li>
+ *     <li>Scale table: every distinct (screen index, scale X, scale Y) combination, with
+ *         the screen index as a zigzag varint and each scale as the bits of the double,
+ *         bit-reversed so that common scales such as 1.25 need only a few bytes</li>
+ *     <li>Entries: windowId as dictionary word indices, then the title as word indices
+ *         (none if it is the same as the windowId), then x, y, width, height as varints
+ *         (zigzag for x and y), then a scale table index</li>
+ * </ul>
+ * Coordinates are rounded to whole units, as in the JSON format. Scales are stored exactly,
+ * so switching between encodings doesn't change how positions are restored. Modality is
+ * not stored, since it is intrinsic to the window. Entry order is preserved.
+ * <p>
+ * Values written by version 1 ({@value #PREFIX_V1}), which rounded scales to hundredths,
+ * can still be decoded.
+ */
+final class DialogStateBinaryCodec {
+
+    /**
+     * Prefix marking a binary-encoded value (version 2).
+     */
+    static final String PREFIX = "b2:";
+
+    /**
+     * Prefix of version 1, which stored scales as hundredths.
+     */
+    static final String PREFIX_V1 = "b1:";
+
+    private DialogStateBinaryCodec() {
+        // Utility class - no instantiation
+    }
+
+    /**
+     * Check whether a stored value uses this encoding.
+     */
+    static boolean isEncoded(String value) {
+        return value != null && (value.startsWith(PREFIX) || value.startsWith(PREFIX_V1));
+    }
+
+    /**
+     * Encode states, preserving iteration order.
+     */
+    static String encode(Map<String, DialogState> states) {
+        List<DialogState> list = new ArrayList<>(states.values());
+        return encode(list, 0);
+    }
+
+    /**
+     * Encode states no longer than {@code maxLength} characters, evicting from the start of
+     * the iteration order (least recently closed first) until the rest fit.
+     * <p>
+     * Because the dictionaries are shared, entry sizes are not additive; the number of
+     * entries to evict is found by binary search, encoding O(log n) times.
+     *
+     * @param evicted Receives the keys of any evicted entries
+     */
+    static String encodeWithinLimit(Map<String, DialogState> states, int maxLength, List<String> evicted) {
+        List<DialogState> list = new ArrayList<>(states.values());
+        String all = encode(list, 0);
+        if (all.length() <= maxLength) {
+            return all;
+        }
+        // Find the smallest start index whose suffix fits; an empty suffix always does
+        int lo = 1;
+        int hi = list.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (encode(list, mid).length() <= maxLength) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        for (int i = 0; i < lo; i++) {
+            evicted.add(list.get(i).windowId());
+        }
+        return encode(list, lo);
+    }
+
+    private static String encode(List<DialogState> states, int from) {
+        Map<String, Integer> words = new LinkedHashMap<>();
+        Map<ScaleKey, Integer> scales = new LinkedHashMap<>();
+        int n = states.size() - from;
+        int[][] idWords = new int[n][];
+        int[][] titleWords = new int[n][];
+        int[] scaleIndex = new int[n];
+        for (int i = 0; i < n; i++) {
+            DialogState state = states.get(from + i);
+            idWords[i] = toWords(state.windowId(), words);
+            String title = state.title();
+            titleWords[i] = title == null || title.equals(state.windowId()) ? new int[0] : toWords(title, words);
+            ScaleKey key = new ScaleKey(state.screenIndex(), state.savedScaleX(), state.savedScaleY());
+            scaleIndex[i] = scales.computeIfAbsent(key, k -> scales.size());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, words.size());
+        for (String word : words.keySet()) {
+            byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        writeVarint(out, scales.size());
+        for (ScaleKey key : scales.keySet()) {
+            writeVarint(out, zigzag(key.screenIndex()));
+            writeVarint(out, Long.reverse(Double.doubleToLongBits(key.scaleX())));
+            writeVarint(out, Long.reverse(Double.doubleToLongBits(key.scaleY())));
+        }
+        writeVarint(out, n);
+        for (int i = 0; i < n; i++) {
+            DialogState state = states.get(from + i);
+            writeVarint(out, idWords[i].length);
+            for (int word : idWords[i]) {
+                writeVarint(out, word);
+            }
+            writeVarint(out, titleWords[i].length);
+            for (int word : titleWords[i]) {
+                writeVarint(out, word);
+            }
+            writeVarint(out, zigzag((int) Math.round(state.x())));
+            writeVarint(out, zigzag((int) Math.round(state.y())));
+            writeVarint(out, (int) Math.round(state.width()));
+            writeVarint(out, (int) Math.round(state.height()));
+            writeVarint(out, scaleIndex[i]);
+        }
+        return PREFIX + Base64.getEncoder().withoutPadding().encodeToString(out.toByteArray());
+    }
+
+    /**
+     * Decode states, preserving the stored order.
+     *
+     * @throws IllegalArgumentException if the value is not a valid encoding
+     */
+    static Map<String, DialogState> decode(String value) {
+        if (!isEncoded(value)) {
+            throw new IllegalArgumentException("Not a binary dialog state encoding");
+        }
+        boolean v1 = value.startsWith(PREFIX_V1);
+        Reader in = new Reader(Base64.getDecoder().decode(value.substring(PREFIX.length())));
+
+        String[] words = new String[in.readCount()];
+        for (int i = 0; i < words.length; i++) {
+            int length = in.readCount();
+            words[i] = new String(in.bytes, in.take(length), length, StandardCharsets.UTF_8);
+        }
+        int[] screenIndex = new int[in.readCount()];
+        double[] scaleX = new double[screenIndex.length];
+        double[] scaleY = new double[screenIndex.length];
+        for (int i = 0; i < screenIndex.length; i++) {
+            if (v1) {
+                screenIndex[i] = in.readVarint();
+                scaleX[i] = in.readVarint() / 100.0;
+                scaleY[i] = in.readVarint() / 100.0;
+            } else {
+                screenIndex[i] = unzigzag(in.readVarint());
+                scaleX[i] = Double.longBitsToDouble(Long.reverse(in.readLongVarint()));
+                scaleY[i] = Double.longBitsToDouble(Long.reverse(in.readLongVarint()));
+            }
+        }
+
+        int n = in.readCount();
+        Map<String, DialogState> result = new LinkedHashMap<>(Math.max(16, n * 4 / 3 + 1));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            String windowId = readWords(in, words, in.readCount(), sb);
+            int titleWordCount = v1 ? 0 : in.readCount();
+            String title = titleWordCount == 0 ? windowId : readWords(in, words, titleWordCount, sb);
+            int x = unzigzag(in.readVarint());
+            int y = unzigzag(in.readVarint());
+            int w = in.readVarint();
+            int h = in.readVarint();
+            int s = in.readIndex(screenIndex.length);
+            result.put(windowId, new DialogState(windowId, title, x, y, w, h, Modality.NONE, false,
+                    screenIndex[s], scaleX[s], scaleY[s]));
+        }
+        return result;
+    }
+
+    /**
+     * Split text into space-separated words, adding any new ones to the dictionary.
+     *
+     * @return The dictionary index of each word
+     */
+    private static int[] toWords(String text, Map<String, Integer> words) {
+        String[] parts = text.split(" ", -1);
+        int[] indices = new int[parts.length];
+        for (int p = 0; p < parts.length; p++) {
+            indices[p] = words.computeIfAbsent(parts[p], k -> words.size());
+        }
+        return indices;
+    }
+
+    /**
+     * Read dictionary word indices and join the words with spaces.
+     */
+    private static String readWords(Reader in, String[] words, int count, StringBuilder sb) {
+        sb.setLength(0);
+        for (int p = 0; p < count; p++) {
+            if (p > 0) {
+                sb.append(' ');
+            }
+            sb.append(words[in.readIndex(words.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private record ScaleKey(int screenIndex, double scaleX, double scaleY) {
+    }
+
+    /**
+     * Bounds-checked cursor over the decoded bytes.
+     */
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int pos = 0;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (pos >= bytes.length) {
+                    throw new IllegalArgumentException("Truncated binary dialog state encoding");
+                }
+                int b = bytes[pos++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in binary dialog state encoding");
+        }
+
+        long readLongVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                if (pos >= bytes.length) {
+                    throw new IllegalArgumentException("Truncated binary dialog state encoding");
+                }
+                int b = bytes[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in binary dialog state encoding");
+        }
+
+        /**
+         * Read a count, which can't exceed the number of remaining bytes.
+         */
+        int readCount() {
+            int count = readVarint();
+            if (count < 0 || count > bytes.length - pos) {
+                throw new IllegalArgumentException("Invalid count in binary dialog state encoding: " + count);
+            }
+            return count;
+        }
+
+        int readIndex(int size) {
+            int index = readVarint();
+            if (index < 0 || index >= size) {
+                throw new IllegalArgumentException("Invalid index in binary dialog state encoding: " + index);
+            }
+            return index;
+        }
+
+        /**
+         * Skip {@code length} bytes, returning the offset of the first.
+         */
+        int take(int length) {
+            int start = pos;
+            pos += length;
+            return start;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package qupath.ext.dialogmanager;
+
+import javafx.stage.Modality;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of dialog states in a memory-mapped file.
+ * <p>
+ * Every save or removal is appended as a small record, so persisting a change never
+ * rewrites the other entries and there is no limit on how many entries can be kept.
+ * Replaying the journal from the start on open rebuilds the latest state of every window.
+ * <p>
+ * Each record is {@code [length][body][crc32(body)]}, and the length is written last.
+ * Replay stops at the first record that is incomplete or fails its checksum - i.e. one
+ * that was being written when the process died - and discards everything after it.
+ * <p>
+ * Superseded records are dropped by compaction, which writes the live entries to a new
+ * file with the next generation number and only then switches over to it. Older
+ * generations are deleted once they are no longer mapped; if a crash happens first,
+ * the highest complete generation wins on the next open.
+ * <p>
+ * Not thread-safe: callers must serialize access.
+ */
+final class DialogStateJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DialogStateJournal.class);
+
+    private static final String FILE_PREFIX = "positions-";
+    private static final String FILE_SUFFIX = ".journal";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int MAGIC = 0x444D4A31; // "DMJ1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    // Saves written by earlier versions, without the title
+    private static final byte OP_PUT_UNTITLED = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_PUT = 3;
+
+    // Length and checksum around each record body
+    private static final int RECORD_OVERHEAD = 8;
+    // Records are small; anything larger than this is treated as corruption on replay
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    /**
+     * Compaction is skipped until the journal holds at least this many records.
+     */
+    private static final int MIN_COMPACTION_RECORDS = 256;
+
+    private final Path directory;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer body = ByteBuffer.allocate(256);
+
+    private long generation;
+    private Path file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private int recordCount;
+    private boolean created;
+
+    private DialogStateJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Open the journal in a directory, creating it if necessary, and replay it.
+     *
+     * @param directory The directory holding the journal files
+     * @param states Receives the replayed states, ordered by when they were last saved
+     * @return The open journal, positioned for appending
+     * @throws IOException if the journal can't be created or mapped
+     */
+    static DialogStateJournal open(Path directory, Map<String, DialogState> states) throws IOException {
+        DialogStateJournal journal = new DialogStateJournal(directory);
+        journal.openLatest(states);
+        return journal;
+    }
+
+    /**
+     * Whether the journal did not exist before it was opened, so that existing
+     * positions should be migrated into it.
+     * <p>
+     * A first-generation file without a header, or with a header but no records, also
+     * counts as new: it was created, but the process stopped before the migrated
+     * positions were written (they are written by compacting into the next generation).
+     */
+    boolean isNew() {
+        return created;
+    }
+
+    /**
+     * Get the number of records in the journal, including superseded ones.
+     */
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Get the offset in the file at which the next record will be written.
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Get the file currently being appended to.
+     */
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Append a record saving a state.
+     */
+    void put(DialogState state) throws IOException {
+        append(encodePut(state));
+    }
+
+    /**
+     * Append a record removing a state.
+     */
+    void remove(String windowId) throws IOException {
+        byte[] id = windowId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = body(1 + 4 + id.length);
+        b.put(OP_REMOVE);
+        b.putInt(id.length);
+        b.put(id);
+        append(b.flip());
+    }
+
+    /**
+     * Write appended records through to the file.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Check whether superseded records outnumber live ones enough to be worth compacting.
+     *
+     * @param liveCount The number of entries currently saved
+     */
+    boolean needsCompaction(int liveCount) {
+        return recordCount >= MIN_COMPACTION_RECORDS && recordCount > 2 * liveCount;
+    }
+
+    /**
+     * Replace the journal with one holding a single record per live entry.
+     *
+     * @param states All live states, in the order they should be replayed
+     */
+    void compact(Map<String, DialogState> states) throws IOException {
+        long nextGeneration = generation + 1;
+        Path target = journalFile(nextGeneration);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+
+        // Write the complete file before it becomes visible under its journal name
+        Path previous = file;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(header());
+            for (DialogState state : states.values()) {
+                write(encodePut(state), out);
+            }
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        closeChannel();
+        map(nextGeneration, target);
+        int count = replay(null);
+        logger.debug("Compacted dialog position journal from {} to {} records", recordCount, count);
+        recordCount = count;
+        deleteQuietly(previous);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            buffer.force();
+        }
+        closeChannel();
+    }
+
+    private void openLatest(Map<String, DialogState> states) throws IOException {
+        Files.createDirectories(directory);
+        long latest = -1;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*")) {
+            for (Path path : stream) {
+                long gen = parseGeneration(path);
+                if (gen > latest) {
+                    latest = gen;
+                }
+            }
+        }
+        long gen = Math.max(latest, 0);
+        map(gen, journalFile(gen));
+        boolean hasHeader = buffer.getInt(0) != 0;
+        if (!hasHeader) {
+            writeHeader();
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unrecognized dialog position journal: " + file);
+        }
+        recordCount = replay(states);
+        created = latest < 0 || !hasHeader || (gen == 0 && recordCount == 0);
+        deleteStaleFiles();
+        logger.debug("Opened dialog position journal {} ({} records)", file, recordCount);
+    }
+
+    private void map(long gen, Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), INITIAL_CAPACITY);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Dialog position journal too large: " + path);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        generation = gen;
+        file = path;
+    }
+
+    /**
+     * Replay records from the start of the mapped file, leaving {@link #position} after the
+     * last valid one. Anything beyond it is zeroed, so a torn record can't be mistaken
+     * for a valid one once new records are appended in front of it.
+     *
+     * @param states Receives the replayed states, or null to only count records
+     * @return The number of valid records
+     */
+    private int replay(Map<String, DialogState> states) {
+        int limit = buffer.capacity();
+        int p = HEADER_SIZE;
+        int count = 0;
+        while (p + RECORD_OVERHEAD <= limit) {
+            int length = buffer.getInt(p);
+            if (length <= 0 || length > MAX_BODY_SIZE || p + RECORD_OVERHEAD + length > limit) {
+                break;
+            }
+            ByteBuffer record = buffer.slice(p + 4, length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(p + 4 + length)) {
+                break;
+            }
+            if (states != null && !apply(record, states)) {
+                break;
+            }
+            p += RECORD_OVERHEAD + length;
+            count++;
+        }
+        position = p;
+
+        int garbage = 0;
+        for (int i = p; i < limit; i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+                garbage++;
+            }
+        }
+        if (garbage > 0) {
+            logger.warn("Discarded incomplete record at the end of dialog position journal {}", file);
+        }
+        return count;
+    }
+
+    /**
+     * Apply one record body to the replayed states.
+     *
+     * @return false if the record is not understood
+     */
+    private static boolean apply(ByteBuffer record, Map<String, DialogState> states) {
+        try {
+            byte op = record.get();
+            byte[] id = new byte[record.getInt()];
+            record.get(id);
+            String windowId = new String(id, StandardCharsets.UTF_8);
+            if (op == OP_REMOVE) {
+                states.remove(windowId);
+                return true;
+            }
+            if (op != OP_PUT && op != OP_PUT_UNTITLED) {
+                return false;
+            }
+            String title = windowId;
+            if (op == OP_PUT) {
+                byte[] titleBytes = new byte[record.getInt()];
+                record.get(titleBytes);
+                title = new String(titleBytes, StandardCharsets.UTF_8);
+            }
+            double x = record.getDouble();
+            double y = record.getDouble();
+            double w = record.getDouble();
+            double h = record.getDouble();
+            int si = record.getInt();
+            double sx = record.getDouble();
+            double sy = record.getDouble();
+            // Re-insert so the order reflects the most recent save
+            states.remove(windowId);
+            states.put(windowId, new DialogState(windowId, title, x, y, w, h,
+                    Modality.NONE, false, si, sx, sy));
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Encode a put record body, ready to be read.
+     */
+    private ByteBuffer encodePut(DialogState state) {
+        byte[] id = state.windowId().getBytes(StandardCharsets.UTF_8);
+        // The title differs from the windowId when title rules apply
+        String title = state.title() == null ? state.windowId() : state.title();
+        byte[] titleBytes = title.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = body(1 + 4 + id.length + 4 + titleBytes.length + 4 * 8 + 4 + 2 * 8);
+        b.put(OP_PUT);
+        b.putInt(id.length);
+        b.put(id);
+        b.putInt(titleBytes.length);
+        b.put(titleBytes);
+        b.putDouble(state.x());
+        b.putDouble(state.y());
+        b.putDouble(state.width());
+        b.putDouble(state.height());
+        b.putInt(state.screenIndex());
+        b.putDouble(state.savedScaleX());
+        b.putDouble(state.savedScaleY());
+        return b.flip();
+    }
+
+    /**
+     * Append a record body to the mapped file.
+     */
+    private void append(ByteBuffer b) throws IOException {
+        int length = b.remaining();
+        ensureCapacity(RECORD_OVERHEAD + length);
+        crc.reset();
+        crc.update(b.duplicate());
+        buffer.put(position + 4, b, b.position(), length);
+        buffer.putInt(position + 4 + length, (int) crc.getValue());
+        // Written last, so a record is only replayed once it is complete
+        buffer.putInt(position, length);
+        position += RECORD_OVERHEAD + length;
+        recordCount++;
+        DialogManagerMetrics.getInstance().add(DialogManagerMetrics.Counter.SERIALIZED_BYTES, RECORD_OVERHEAD + length);
+    }
+
+    /**
+     * Write a complete record to a channel.
+     */
+    private void write(ByteBuffer b, FileChannel out) throws IOException {
+        int length = b.remaining();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + length);
+        crc.reset();
+        crc.update(b.duplicate());
+        record.putInt(length);
+        record.put(b);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            out.write(record);
+        }
+        DialogManagerMetrics.getInstance().add(DialogManagerMetrics.Counter.SERIALIZED_BYTES, RECORD_OVERHEAD + length);
+    }
+
+    private ByteBuffer body(int size) {
+        if (body.capacity() < size) {
+            body = ByteBuffer.allocate(Math.max(size, body.capacity() * 2));
+        }
+        body.clear();
+        return body;
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if (position + (long) needed <= buffer.capacity()) {
+            return;
+        }
+        long size = Math.max((long) buffer.capacity() * 2, (long) position + needed);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Dialog position journal too large: " + file);
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        return header;
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+    }
+
+    private void closeChannel() throws IOException {
+        buffer = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Remove older generations and leftover temporary files. Files that are still mapped
+     * can't be deleted on some platforms; they are retried on the next open.
+     */
+    private void deleteStaleFiles() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*")) {
+            for (Path path : stream) {
+                if (!path.equals(file)) {
+                    deleteQuietly(path);
+                }
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Unable to delete old dialog position journal {}: {}", path, e.getMessage());
+        }
+    }
+
+    private Path journalFile(long gen) {
+        return directory.resolve(FILE_PREFIX + gen + FILE_SUFFIX);
+    }
+
+    /**
+     * Get the generation of a journal file, or -1 if the name is not a journal file.
+     */
+    private static long parseGeneration(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
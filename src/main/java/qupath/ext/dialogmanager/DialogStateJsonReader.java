@@ -0,0 +1,235 @@
+package qupath.ext.dialogmanager;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import javafx.stage.Modality;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streaming decoder for the saved dialog state JSON.
+ * <p>
+ * Reads tokens directly into {@link DialogState}s, without building a {@code JsonObject}
+ * tree or boxing numbers. Accepts both the compact keys ({@code w/h/m/si/sx/sy}) and the
+ * legacy verbose keys ({@code width/height/modality/screenIndex/scaleX/scaleY}); where both
+ * are present the compact key wins, regardless of order.
+ * <p>
+ * Entries that are not objects, or that contain values of the wrong type, are skipped
+ * individually. Malformed JSON fails the whole read.
+ */
+final class DialogStateJsonReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(DialogStateJsonReader.class);
+
+    // Field slots for the values of one entry
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int W = 2;
+    private static final int H = 3;
+    private static final int SI = 4;
+    private static final int SX = 5;
+    private static final int SY = 6;
+    private static final int FIELD_COUNT = 7;
+
+    private DialogStateJsonReader() {
+        // Utility class - no instantiation
+    }
+
+    /**
+     * Decode a JSON object of windowId to state.
+     *
+     * @param json The stored JSON
+     * @return Map of windowId to DialogState in stored order
+     * @throws IOException if the JSON is malformed or not an object
+     */
+    static Map<String, DialogState> read(String json) throws IOException {
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            return readStates(reader);
+        }
+    }
+
+    /**
+     * Read a JSON object of windowId to state from the reader's current position.
+     *
+     * @param reader A reader positioned at the start of the object
+     * @return Map of windowId to DialogState in stored order
+     * @throws IOException if the JSON is malformed or not an object
+     */
+    static Map<String, DialogState> readStates(JsonReader reader) throws IOException {
+        Map<String, DialogState> result = new LinkedHashMap<>();
+        // Reused across entries: the value of each field, and whether it came
+        // from the compact key (2), the legacy key (1) or is unset (0)
+        double[] values = new double[FIELD_COUNT];
+        int[] sources = new int[FIELD_COUNT];
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String windowId = reader.nextName();
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                logger.debug("Skipping invalid entry '{}': not an object", windowId);
+                reader.skipValue();
+                continue;
+            }
+            DialogState state = readState(reader, windowId, values, sources);
+            if (state != null) {
+                result.put(windowId, state);
+            }
+        }
+        reader.endObject();
+        return result;
+    }
+
+    /**
+     * Read a single state object from the reader's current position.
+     *
+     * @param reader A reader positioned at the start of the object
+     * @param windowId The windowId (and default title) of the state
+     * @return The state, or null if the object was invalid
+     * @throws IOException if the JSON is malformed or not an object
+     */
+    static DialogState readState(JsonReader reader, String windowId) throws IOException {
+        return readState(reader, windowId, new double[FIELD_COUNT], new int[FIELD_COUNT]);
+    }
+
+    /**
+     * Read one entry object. The whole object is always consumed.
+     * <p>
+     * As with a tree lookup, a bad value only invalidates the entry if it is the one
+     * that would be used: a compact key beats a legacy key, and a later duplicate beats
+     * an earlier one.
+     *
+     * @return The state, or null if the entry was invalid
+     */
+    private static DialogState readState(JsonReader reader, String windowId,
+                                         double[] values, int[] sources) throws IOException {
+        Arrays.fill(sources, 0);
+        String modality = null;
+        int modalitySource = 0;
+        String title = null;
+        boolean titleSet = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            int slot;
+            int source = 2;
+            switch (name) {
+                case "x" -> slot = X;
+                case "y" -> slot = Y;
+                case "w" -> slot = W;
+                case "h" -> slot = H;
+                case "si" -> slot = SI;
+                case "sx" -> slot = SX;
+                case "sy" -> slot = SY;
+                case "width" -> { slot = W; source = 1; }
+                case "height" -> { slot = H; source = 1; }
+                case "screenIndex" -> { slot = SI; source = 1; }
+                case "scaleX" -> { slot = SX; source = 1; }
+                case "scaleY" -> { slot = SY; source = 1; }
+                case "title" -> {
+                    title = readString(reader);
+                    titleSet = true;
+                    continue;
+                }
+                case "m", "modality" -> {
+                    String value = readString(reader);
+                    int modSource = name.equals("m") ? 2 : 1;
+                    if (modSource >= modalitySource) {
+                        modality = value;
+                        modalitySource = modSource;
+                    }
+                    continue;
+                }
+                default -> {
+                    reader.skipValue();
+                    continue;
+                }
+            }
+            // NaN marks an invalid value, which only matters if it is not overridden
+            double value = readNumber(reader);
+            if (source >= sources[slot]) {
+                values[slot] = value;
+                sources[slot] = source;
+            }
+        }
+        reader.endObject();
+
+        String invalid = null;
+        for (int slot = 0; slot < FIELD_COUNT; slot++) {
+            if (sources[slot] > 0 && Double.isNaN(values[slot])) {
+                invalid = "numeric field";
+            }
+        }
+        if (modalitySource > 0 && modality == null) {
+            invalid = "modality";
+        }
+        if (titleSet && title == null) {
+            invalid = "title";
+        }
+        if (invalid != null) {
+            logger.debug("Skipping invalid entry '{}': bad {}", windowId, invalid);
+            return null;
+        }
+
+        Modality mod = Modality.NONE;
+        if (modality != null) {
+            try {
+                mod = Modality.valueOf(modality);
+            } catch (IllegalArgumentException e) {
+                // Keep default
+            }
+        }
+        double sx = sources[SX] > 0 ? values[SX] : 1.0;
+        double sy = sources[SY] > 0 ? values[SY] : 1.0;
+
+        return new DialogState(windowId, titleSet ? title : windowId,
+                intValue(values, sources, X), intValue(values, sources, Y),
+                intValue(values, sources, W), intValue(values, sources, H),
+                mod, false, intValue(values, sources, SI),
+                sx > 0 ? sx : 1.0, sy > 0 ? sy : 1.0);
+    }
+
+    private static int intValue(double[] values, int[] sources, int slot) {
+        return sources[slot] > 0 ? (int) values[slot] : 0;
+    }
+
+    /**
+     * Read a number (or numeric string), consuming the value either way.
+     *
+     * @return The number, or NaN if the value was not numeric
+     */
+    private static double readNumber(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            try {
+                return reader.nextDouble();
+            } catch (NumberFormatException e) {
+                // nextDouble only consumes the value on success
+                reader.skipValue();
+                return Double.NaN;
+            }
+        }
+        reader.skipValue();
+        return Double.NaN;
+    }
+
+    /**
+     * Read a string (or number as a string), consuming the value either way.
+     *
+     * @return The string, or null if the value was not a string or number
+     */
+    private static String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+}
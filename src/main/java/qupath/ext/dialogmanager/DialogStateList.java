@@ -0,0 +1,126 @@
+package qupath.ext.dialogmanager;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Observable list of dialog states with an index from windowId to list position.
+ * <p>
+ * Updates to an existing window replace its element in place, producing a single
+ * change event instead of a remove + add over the whole list. Removal swaps the last
+ * element into the freed slot, so every operation is O(1). List order is therefore
+ * not meaningful; the UI sorts the list itself.
+ * <p>
+ * All methods must be called on the FX application thread.
+ */
+final class DialogStateList {
+
+    private final ObservableList<DialogState> states = FXCollections.observableArrayList();
+    private final ObservableList<DialogState> readOnlyStates = FXCollections.unmodifiableObservableList(states);
+    private final Map<String, Integer> indexById = new HashMap<>();
+
+    /**
+     * Get a read-only view of the list for UI binding.
+     */
+    ObservableList<DialogState> getReadOnlyList() {
+        return readOnlyStates;
+    }
+
+    /**
+     * Get the current state for a window.
+     *
+     * @return The state, or null if the window is not in the list
+     */
+    DialogState get(String windowId) {
+        Integer index = indexById.get(windowId);
+        return index == null ? null : states.get(index);
+    }
+
+    /**
+     * Add a state, or replace the existing state with the same windowId.
+     */
+    void put(DialogState state) {
+        Integer index = indexById.get(state.windowId());
+        if (index != null) {
+            states.set(index, state);
+        } else {
+            indexById.put(state.windowId(), states.size());
+            states.add(state);
+        }
+    }
+
+    /**
+     * Add or replace several states. New states are appended with a single change event.
+     */
+    void putAll(Collection<DialogState> newStates) {
+        int base = states.size();
+        List<DialogState> toAppend = new ArrayList<>();
+        for (DialogState state : newStates) {
+            Integer index = indexById.get(state.windowId());
+            if (index == null) {
+                indexById.put(state.windowId(), base + toAppend.size());
+                toAppend.add(state);
+            } else if (index >= base) {
+                // Duplicate within this batch
+                toAppend.set(index - base, state);
+            } else {
+                states.set(index, state);
+            }
+        }
+        if (!toAppend.isEmpty()) {
+            states.addAll(toAppend);
+        }
+    }
+
+    /**
+     * Replace the whole list with a single change event.
+     * If several states share a windowId, the last one wins.
+     */
+    void replaceAll(Collection<DialogState> newStates) {
+        Map<String, DialogState> byId = new LinkedHashMap<>();
+        for (DialogState state : newStates) {
+            byId.put(state.windowId(), state);
+        }
+        indexById.clear();
+        int index = 0;
+        for (String windowId : byId.keySet()) {
+            indexById.put(windowId, index++);
+        }
+        states.setAll(byId.values());
+    }
+
+    /**
+     * Remove the state for a window.
+     *
+     * @return true if the window was in the list
+     */
+    boolean remove(String windowId) {
+        Integer index = indexById.remove(windowId);
+        if (index == null) {
+            return false;
+        }
+        int last = states.size() - 1;
+        if (index != last) {
+            DialogState moved = states.get(last);
+            states.set(index, moved);
+            indexById.put(moved.windowId(), index);
+        }
+        states.remove(last);
+        return true;
+    }
+
+    /**
+     * Remove all states.
+     */
+    void clear() {
+        indexById.clear();
+        states.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package qupath.ext.dialogmanager;
+
+import java.util.Map;
+
+/**
+ * Storage backend for saved dialog states.
+ * <p>
+ * A store keeps an in-memory copy of its states, which answers all reads. Changes made
+ * through {@link #put(DialogState)} and {@link #remove(String)} may be buffered until
+ * {@link #flush()} is called; {@link DialogPositionPreferences} takes care of scheduling
+ * flushes in the background and on shutdown.
+ * <p>
+ * Implementations must be safe to call from the FX application thread and the background
+ * persistence thread at the same time. The available stores are:
+ * <ul>
+ *     <li>{@link PreferencesDialogStateStore}: compact JSON in Java preferences (the default)</li>
+ *     <li>{@link FileDialogStateStore}: an append-only journal file in the QuPath user directory</li>
+ *     <li>{@link #inMemory()}: no persistence, for tests and benchmarks</li>
+ * </ul>
+ *
+ * @see DialogPositionPreferences#setStore(DialogStateStore)
+ */
+public interface DialogStateStore {
+
+    /**
+     * Get the saved state for a window.
+     *
+     * @param windowId The window ID to look up
+     * @return The saved state, or null if there is none
+     */
+    DialogState get(String windowId);
+
+    /**
+     * Save a state, replacing any existing state for the same window.
+     * The window becomes the most recently saved.
+     *
+     * @param state The state to save
+     */
+    void put(DialogState state);
+
+    /**
+     * Remove the saved state for a window.
+     *
+     * @param windowId The window ID to remove
+     * @return true if there was a state to remove
+     */
+    boolean remove(String windowId);
+
+    /**
+     * Remove all saved states.
+     */
+    default void clear() {
+        for (String windowId : snapshot().keySet()) {
+            remove(windowId);
+        }
+    }
+
+    /**
+     * Get an unmodifiable copy of all saved states, keyed by windowId.
+     * <p>
+     * The iteration order is not specified. The in-memory and file stores happen to return
+     * states least recently saved first, but the preferences store groups them by shard,
+     * so callers must not rely on the order.
+     */
+    Map<String, DialogState> snapshot();
+
+    /**
+     * Write any buffered changes to the underlying storage.
+     */
+    void flush();
+
+    /**
+     * Create a store that only keeps states in memory.
+     */
+    static DialogStateStore inMemory() {
+        return new InMemoryDialogStateStore();
+    }
+}
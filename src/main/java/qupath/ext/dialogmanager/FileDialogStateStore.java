@@ -0,0 +1,178 @@
+package qupath.ext.dialogmanager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Dialog state store backed by an append-only journal file (see {@link DialogStateJournal}).
+ * <p>
+ * States are held in memory, ordered by save time. Each flush appends one small record per
+ * window changed since the last flush, so there is no size limit and unchanged entries
+ * are never rewritten. The journal is compacted once superseded records have piled up.
+ */
+final class FileDialogStateStore implements DialogStateStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileDialogStateStore.class);
+
+    private final DialogStateJournal journal;
+
+    // Guards the states and dirty tracking, which are touched from the FX and persistence threads
+    private final Object lock = new Object();
+    // Serializes journal access
+    private final Object writeLock = new Object();
+
+    // Ordered by save time, least recent first
+    private final Map<String, DialogState> states;
+    // Windows saved or removed since the last flush
+    private final Set<String> dirtyIds = new LinkedHashSet<>();
+    // Whether the journal should be rewritten from the states rather than appended to
+    private boolean rewrite;
+
+    private FileDialogStateStore(DialogStateJournal journal, Map<String, DialogState> states, boolean rewrite) {
+        this.journal = journal;
+        this.states = states;
+        this.rewrite = rewrite;
+    }
+
+    /**
+     * Open the journal in a directory.
+     * <p>
+     * If the journal is new, or {@code replace} is true, its contents are replaced by
+     * {@code initial} and written out straight away. Otherwise the journal's own
+     * contents are used.
+     *
+     * @param directory The directory holding the journal files
+     * @param initial Supplies the states to start with when not using the journal's contents
+     * @param replace Whether to replace existing journal contents
+     * @return The open store
+     * @throws IOException if the journal can't be opened
+     */
+    static FileDialogStateStore open(Path directory, Supplier<Map<String, DialogState>> initial,
+                                     boolean replace) throws IOException {
+        Map<String, DialogState> replayed = new LinkedHashMap<>();
+        DialogStateJournal journal = DialogStateJournal.open(directory, replayed);
+        if (!journal.isNew() && !replace) {
+            logger.info("Loaded {} dialog positions from {}", replayed.size(), journal.getFile());
+            return new FileDialogStateStore(journal, replayed, false);
+        }
+        FileDialogStateStore store = new FileDialogStateStore(journal, new LinkedHashMap<>(initial.get()), true);
+        store.flush();
+        logger.info("Copied {} dialog positions to {}", store.states.size(), journal.getFile());
+        return store;
+    }
+
+    @Override
+    public DialogState get(String windowId) {
+        synchronized (lock) {
+            return states.get(windowId);
+        }
+    }
+
+    @Override
+    public void put(DialogState state) {
+        synchronized (lock) {
+            states.remove(state.windowId());
+            states.put(state.windowId(), state);
+            dirtyIds.add(state.windowId());
+        }
+    }
+
+    @Override
+    public boolean remove(String windowId) {
+        synchronized (lock) {
+            if (states.remove(windowId) == null) {
+                return false;
+            }
+            dirtyIds.add(windowId);
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            states.clear();
+            dirtyIds.clear();
+            rewrite = true;
+        }
+    }
+
+    @Override
+    public Map<String, DialogState> snapshot() {
+        synchronized (lock) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(states));
+        }
+    }
+
+    /**
+     * Append the changes since the last flush to the journal, compacting it if superseded
+     * records have piled up.
+     */
+    @Override
+    public void flush() {
+        synchronized (writeLock) {
+            Map<String, DialogState> changes = new LinkedHashMap<>();
+            Map<String, DialogState> all = null;
+            int liveCount;
+            synchronized (lock) {
+                if (rewrite) {
+                    all = new LinkedHashMap<>(states);
+                } else {
+                    for (String windowId : dirtyIds) {
+                        // A null state records a removal
+                        changes.put(windowId, states.get(windowId));
+                    }
+                }
+                liveCount = states.size();
+                dirtyIds.clear();
+                rewrite = false;
+            }
+
+            try {
+                if (all == null) {
+                    if (changes.isEmpty()) {
+                        return;
+                    }
+                    for (var entry : changes.entrySet()) {
+                        if (entry.getValue() == null) {
+                            journal.remove(entry.getKey());
+                        } else {
+                            journal.put(entry.getValue());
+                        }
+                    }
+                    journal.force();
+                    if (!journal.needsCompaction(liveCount)) {
+                        logger.debug("Appended {} dialog position changes to journal", changes.size());
+                        return;
+                    }
+                    all = snapshot();
+                }
+                journal.compact(all);
+                logger.debug("Rewrote dialog position journal with {} entries", all.size());
+            } catch (IOException e) {
+                logger.error("Failed to save dialog positions: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Flush and close the journal. The store must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            flush();
+            journal.close();
+        }
+    }
+}
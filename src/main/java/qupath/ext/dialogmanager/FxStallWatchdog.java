@@ -0,0 +1,270 @@
+package qupath.ext.dialogmanager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reports dialog manager callbacks that hold up the JavaFX application thread.
+ * <p>
+ * All of the manager's listeners run on the FX thread, so a slow one shows up as a
+ * stutter in the whole of QuPath. When enabled, the watchdog notes when each callback
+ * starts and finishes, and any that runs for longer than the budget is logged and kept
+ * as a {@link Stall}. While a callback is over budget a background thread takes a
+ * snapshot of the FX thread's stack, so the stall shows where the time was going rather
+ * than just which callback it was in.
+ * <p>
+ * The watchdog is off by default. While it is off, the only cost is a check of a
+ * volatile flag per callback.
+ */
+public final class FxStallWatchdog {
+
+    private static final Logger logger = LoggerFactory.getLogger(FxStallWatchdog.class);
+
+    private static FxStallWatchdog instance;
+
+    /**
+     * Budget used until another is set.
+     */
+    public static final int DEFAULT_BUDGET_MILLIS = 4;
+
+    /**
+     * Maximum number of stalls kept; the oldest is dropped first.
+     */
+    static final int MAX_STALLS = 50;
+
+    // Frames kept from each stack snapshot
+    private static final int MAX_STACK_DEPTH = 64;
+
+    /**
+     * A callback that ran for longer than the budget.
+     *
+     * @param callback Name of the callback
+     * @param timestamp When the callback finished, in milliseconds since the epoch
+     * @param durationNanos How long the callback ran
+     * @param stack The FX thread's stack while the callback was over budget, or where the
+     *              callback finished if it ended before a snapshot was taken
+     * @param sampled True if the stack was taken while the callback was still running
+     */
+    public record Stall(String callback, long timestamp, long durationNanos,
+                        List<StackTraceElement> stack, boolean sampled) {
+
+        /**
+         * Get how long the callback ran, in milliseconds.
+         */
+        public double durationMillis() {
+            return durationNanos / 1e6;
+        }
+
+        /**
+         * Describe the stall and its stack, e.g. for the log.
+         */
+        public String describe() {
+            StringBuilder sb = new StringBuilder(String.format("%s took %.1f ms", callback, durationMillis()));
+            sb.append(sampled ? ", stack while running:" : ", stack on exit:");
+            for (StackTraceElement element : stack) {
+                sb.append(System.lineSeparator()).append("\tat ").append(element);
+            }
+            return sb.toString();
+        }
+    }
+
+    // A stack snapshot of the callback with the given sequence number
+    private record Sample(long sequence, StackTraceElement[] stack) {
+    }
+
+    private volatile boolean enabled = false;
+    private volatile long budgetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BUDGET_MILLIS);
+
+    // The running callback, written on the FX thread and read by the sampler.
+    // The sequence number is 0 while no callback is running.
+    private volatile long activeSequence = 0;
+    private volatile long activeStart;
+    private volatile Thread fxThread;
+    private final AtomicReference<Sample> sample = new AtomicReference<>();
+
+    // FX thread only
+    private String activeCallback;
+    private long lastSequence = 0;
+
+    // Guarded by this
+    private final Deque<Stall> stalls = new ArrayDeque<>();
+    private long stallCount = 0;
+    private ScheduledExecutorService sampler;
+
+    private FxStallWatchdog() {
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized FxStallWatchdog getInstance() {
+        if (instance == null) {
+            instance = new FxStallWatchdog();
+        }
+        return instance;
+    }
+
+    /**
+     * Check whether the watchdog is running.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start or stop the watchdog. Stalls collected so far are kept.
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+        if (enabled) {
+            startSampler();
+            logger.info("FX thread stall watchdog enabled, budget {} ms", getBudgetMillis());
+        } else {
+            sampler.shutdownNow();
+            sampler = null;
+            logger.info("FX thread stall watchdog disabled");
+        }
+    }
+
+    /**
+     * Get the time a callback may run for before it is reported.
+     */
+    public int getBudgetMillis() {
+        return (int) TimeUnit.NANOSECONDS.toMillis(budgetNanos);
+    }
+
+    /**
+     * Set the time a callback may run for before it is reported.
+     *
+     * @param millis The budget, at least 1 ms
+     */
+    public synchronized void setBudgetMillis(int millis) {
+        budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, millis));
+        if (enabled) {
+            // Check at a rate that suits the new budget
+            sampler.shutdownNow();
+            startSampler();
+        }
+    }
+
+    /**
+     * Get the stalls collected so far, oldest first.
+     */
+    public synchronized List<Stall> getStalls() {
+        return List.copyOf(stalls);
+    }
+
+    /**
+     * Get the total number of stalls since startup or the last {@link #clear()},
+     * including any no longer kept.
+     */
+    public synchronized long getStallCount() {
+        return stallCount;
+    }
+
+    /**
+     * Forget all collected stalls.
+     */
+    public synchronized void clear() {
+        stalls.clear();
+        stallCount = 0;
+    }
+
+    /**
+     * Note that a callback has started. Must be called on the FX application thread.
+     *
+     * @param callback Name of the callback
+     * @param startNanos The start time, as returned by {@link System#nanoTime()}
+     */
+    void enter(String callback, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        activeCallback = callback;
+        fxThread = Thread.currentThread();
+        activeStart = startNanos;
+        activeSequence = ++lastSequence;
+    }
+
+    /**
+     * Note that the callback passed to the last {@link #enter(String, long)} has finished.
+     * Must be called on the FX application thread.
+     *
+     * @param durationNanos How long the callback ran
+     */
+    void exit(long durationNanos) {
+        String callback = activeCallback;
+        if (callback == null) {
+            // Not entered while enabled
+            return;
+        }
+        long sequence = activeSequence;
+        activeSequence = 0;
+        activeCallback = null;
+        if (durationNanos <= budgetNanos) {
+            return;
+        }
+
+        Sample snapshot = sample.get();
+        boolean sampled = snapshot != null && snapshot.sequence() == sequence;
+        StackTraceElement[] stack = sampled ? snapshot.stack() : Thread.currentThread().getStackTrace();
+        Stall stall = new Stall(callback, System.currentTimeMillis(), durationNanos,
+                List.of(Arrays.copyOf(stack, Math.min(stack.length, MAX_STACK_DEPTH))), sampled);
+        synchronized (this) {
+            if (stalls.size() >= MAX_STALLS) {
+                stalls.removeFirst();
+            }
+            stalls.addLast(stall);
+            stallCount++;
+        }
+        logger.warn("Dialog manager callback '{}' held up the FX thread for {} ms (budget {} ms)",
+                callback, String.format("%.1f", stall.durationMillis()), getBudgetMillis());
+        logger.debug("{}", stall.describe());
+    }
+
+    private void startSampler() {
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dialog-manager-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Check twice per budget, so an over-budget callback is caught while still running
+        long period = Math.max(TimeUnit.MILLISECONDS.toNanos(1), budgetNanos / 2);
+        sampler.scheduleAtFixedRate(this::checkActiveCallback, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Take a snapshot of the FX thread's stack if the running callback is over budget.
+     * Called on the sampler thread.
+     */
+    private void checkActiveCallback() {
+        long sequence = activeSequence;
+        if (sequence == 0 || System.nanoTime() - activeStart <= budgetNanos) {
+            return;
+        }
+        Sample previous = sample.get();
+        if (previous != null && previous.sequence() == sequence) {
+            // One snapshot per callback is enough
+            return;
+        }
+        Thread thread = fxThread;
+        StackTraceElement[] stack = thread == null ? new StackTraceElement[0] : thread.getStackTrace();
+        // Only keep it if the same callback was still running when the snapshot was taken
+        if (activeSequence == sequence) {
+            sample.set(new Sample(sequence, stack));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package qupath.ext.dialogmanager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Dialog state store that keeps everything in memory and never persists.
+ * Used for tests and benchmarks, where no preference node or user directory is available.
+ */
+final class InMemoryDialogStateStore implements DialogStateStore {
+
+    // Ordered by save time, least recent first. Guarded by this.
+    private final Map<String, DialogState> states = new LinkedHashMap<>();
+
+    @Override
+    public synchronized DialogState get(String windowId) {
+        return states.get(windowId);
+    }
+
+    @Override
+    public synchronized void put(DialogState state) {
+        states.remove(state.windowId());
+        states.put(state.windowId(), state);
+    }
+
+    @Override
+    public synchronized boolean remove(String windowId) {
+        return states.remove(windowId) != null;
+    }
+
+    @Override
+    public synchronized void clear() {
+        states.clear();
+    }
+
+    @Override
+    public synchronized Map<String, DialogState> snapshot() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(states));
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to write
+    }
+}
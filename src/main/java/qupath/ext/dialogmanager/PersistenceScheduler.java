@@ -0,0 +1,81 @@
+package qupath.ext.dialogmanager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Coalesces persistence requests and runs them on a single background thread.
+ * <p>
+ * The first request after a flush starts a window of {@code delayMillis}; any further
+ * requests within that window are merged into the same flush. This turns a burst of
+ * dialog closes (e.g. a project switch) into a single serialize + write.
+ */
+final class PersistenceScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistenceScheduler.class);
+
+    private final Runnable flushTask;
+    private final LongSupplier delayMillis;
+    private final ScheduledExecutorService executor;
+
+    // Guarded by this
+    private ScheduledFuture<?> pending;
+
+    /**
+     * @param flushTask The task that writes all dirty state
+     * @param delayMillis Supplier of the coalescing window, read each time a flush is scheduled
+     */
+    PersistenceScheduler(Runnable flushTask, LongSupplier delayMillis) {
+        this.flushTask = flushTask;
+        this.delayMillis = delayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dialog-manager-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Request a flush. Does nothing if one is already scheduled.
+     */
+    synchronized void schedule() {
+        if (pending != null && !pending.isDone()) {
+            return;
+        }
+        long delay = Math.max(0, delayMillis.getAsLong());
+        pending = executor.schedule(this::runFlush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancel any scheduled flush and run it immediately on the calling thread.
+     * Used on shutdown so that no pending positions are lost.
+     */
+    void flushNow() {
+        synchronized (this) {
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+        }
+        runFlush();
+    }
+
+    private void runFlush() {
+        // A request arriving while the flush runs may come after the store has taken its
+        // snapshot, so it must schedule a flush of its own rather than join this one
+        synchronized (this) {
+            pending = null;
+        }
+        try {
+            flushTask.run();
+        } catch (Exception e) {
+            logger.error("Background write failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package qupath.ext.dialogmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import javafx.beans.property.ObjectProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.lib.gui.prefs.PathPrefs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Dialog state store backed by Java preferences.
+ * <p>
+ * Dialog states are serialized to compact JSON (or optionally a compact binary encoding,
+ * see {@code DialogStateBinaryCodec}) and spread over {@value #SHARD_COUNT}
+ * preference entries ("shards"), chosen by a hash of the windowId. Each shard stays
+ * within the Java Preferences value limit on its own, so total capacity scales with the
+ * number of shards, and a change only rewrites the shard it belongs to. A manifest entry
+ * records the shard count so that the layout can be migrated if it ever changes; the
+ * single QuPath preference used by earlier versions is migrated automatically.
+ * <p>
+ * The shards are kept in the extension's own preference node and written with
+ * {@link Preferences} directly rather than through QuPath's preference properties, since
+ * {@link #flush()} runs on the background persistence thread and JavaFX properties must
+ * only be changed on the FX application thread.
+ * <p>
+ * Each shard is parsed once, on first use, into an in-memory cache, which is the
+ * authoritative copy for all lookups. Changes mark their shard dirty, and {@link #flush()}
+ * serializes each dirty shard back to its preference.
+ */
+final class PreferencesDialogStateStore implements DialogStateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreferencesDialogStateStore.class);
+
+    /**
+     * QuPath preference used by versions that stored all positions in a single entry.
+     * Read once for migration, then cleared.
+     */
+    private static final String LEGACY_PREF_KEY = "dialogManager.positions";
+    private static final String SHARD_KEY_PREFIX = "positions.";
+    private static final String SHARD_MANIFEST_KEY = "positions.shards";
+    private static final String BINARY_ENCODING_KEY = "binaryEncoding";
+
+    /**
+     * Number of preference entries positions are spread across.
+     * With {@link #MAX_JSON_LENGTH} per shard this allows for a few thousand entries.
+     */
+    static final int SHARD_COUNT = 32;
+
+    /**
+     * Maximum length for the JSON string of one shard to stay under Java Preferences limit
+     * (8192 bytes). Using a conservative limit to allow for encoding overhead.
+     */
+    private static final int MAX_JSON_LENGTH = 7500;
+
+    // Note: No pretty printing to stay within Java Preferences 8192 char limit
+    private static final Gson GSON = new GsonBuilder().create();
+
+    // Node holding the shards, the manifest and the encoding setting
+    private final Preferences preferences;
+
+    // Whether shards are written with the compact binary codec instead of JSON
+    private volatile boolean binaryEncoding;
+
+    // Guards the shard caches and dirty flags, which are touched from the FX and persistence threads
+    private final Object lock = new Object();
+    // Serializes flushes so a shutdown flush can't interleave with a background one
+    private final Object writeLock = new Object();
+
+    // Authoritative in-memory copy of the saved states, one map per shard keyed by windowId.
+    // Each map is ordered by close time, least recent first.
+    private final List<Map<String, DialogState>> shardCaches = new ArrayList<>(SHARD_COUNT);
+    // Shards that have been read into their cache
+    private final BitSet validShards = new BitSet(SHARD_COUNT);
+    private final BitSet dirtyShards = new BitSet(SHARD_COUNT);
+
+    /**
+     * Create the store in the extension's preference node, migrating positions saved in
+     * QuPath's preferences by earlier versions. Only one instance should be created per
+     * session, on the FX application thread.
+     */
+    PreferencesDialogStateStore() {
+        this(Preferences.userNodeForPackage(PreferencesDialogStateStore.class));
+        migrateLegacyPreference();
+    }
+
+    /**
+     * Create the store in a preference node, migrating a different shard count.
+     *
+     * @param preferences The node to keep the shards in
+     */
+    PreferencesDialogStateStore(Preferences preferences) {
+        this.preferences = preferences;
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shardCaches.add(new LinkedHashMap<>());
+        }
+        binaryEncoding = preferences.getBoolean(BINARY_ENCODING_KEY, false);
+
+        migrateShardLayout();
+    }
+
+    /**
+     * Move positions saved with a different shard count into the current shards, and
+     * record the current shard count in the manifest.
+     */
+    private void migrateShardLayout() {
+        int storedShardCount = preferences.getInt(SHARD_MANIFEST_KEY, 0);
+        if (storedShardCount == SHARD_COUNT) {
+            return;
+        }
+
+        Map<String, DialogState> existing = new LinkedHashMap<>();
+        for (int i = 0; i < storedShardCount; i++) {
+            existing.putAll(parseStored(preferences.get(shardKey(i), null)));
+            // Shards beyond the current count would otherwise be left behind
+            if (i >= SHARD_COUNT) {
+                preferences.remove(shardKey(i));
+            }
+        }
+
+        synchronized (lock) {
+            for (int i = 0; i < SHARD_COUNT; i++) {
+                shardCaches.get(i).clear();
+                validShards.set(i);
+                dirtyShards.set(i);
+            }
+            for (var entry : existing.entrySet()) {
+                shardCaches.get(shardOf(entry.getKey())).put(entry.getKey(), entry.getValue());
+            }
+        }
+        flush();
+        preferences.putInt(SHARD_MANIFEST_KEY, SHARD_COUNT);
+        if (storedShardCount > 0) {
+            logger.info("Migrated {} dialog positions to {} preference shards", existing.size(), SHARD_COUNT);
+        }
+    }
+
+    /**
+     * Move positions saved in the single QuPath preference used by earlier versions into
+     * the shards, then clear it. Positions already in the shards are kept.
+     * <p>
+     * Positions those versions saved for untitled windows, under IDs that are never seen
+     * again, are dropped. They can only come from that preference, and clearing it records
+     * that they have been dealt with, so this only happens once.
+     */
+    private void migrateLegacyPreference() {
+        ObjectProperty<String> legacyJsonProperty = PathPrefs.createPersistentPreference(
+                LEGACY_PREF_KEY,
+                "{}",
+                s -> s,
+                s -> s
+        );
+        Map<String, DialogState> legacy = parseStored(legacyJsonProperty.get());
+        if (legacy.isEmpty()) {
+            return;
+        }
+        int migrated = 0;
+        int dropped = 0;
+        for (DialogState state : legacy.values()) {
+            if (WindowKeys.isLegacyFallbackKey(state.windowId())) {
+                dropped++;
+            } else if (get(state.windowId()) == null) {
+                put(state);
+                migrated++;
+            }
+        }
+        flush();
+        legacyJsonProperty.set("{}");
+        logger.info("Migrated {} dialog positions to {} preference shards, dropped {} saved under per-window fallback IDs",
+                migrated, SHARD_COUNT, dropped);
+    }
+
+    /**
+     * Get the preference key of a shard.
+     */
+    private static String shardKey(int shard) {
+        return SHARD_KEY_PREFIX + shard;
+    }
+
+    /**
+     * Get the shard a windowId is stored in.
+     */
+    static int shardOf(String windowId) {
+        return Math.floorMod(windowId.hashCode(), SHARD_COUNT);
+    }
+
+    @Override
+    public DialogState get(String windowId) {
+        if (windowId == null) {
+            return null;
+        }
+        synchronized (lock) {
+            return ensureShard(shardOf(windowId)).get(windowId);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the entry's shard is marked dirty and rewritten by the next flush.
+     */
+    @Override
+    public void put(DialogState state) {
+        int shard = shardOf(state.windowId());
+        synchronized (lock) {
+            // Re-insert so the cache (and the persisted JSON) stays ordered by close time,
+            // least recent first; this is the order used for eviction
+            Map<String, DialogState> cache = ensureShard(shard);
+            cache.remove(state.windowId());
+            cache.put(state.windowId(), state);
+            dirtyShards.set(shard);
+        }
+    }
+
+    @Override
+    public boolean remove(String windowId) {
+        if (windowId == null) {
+            return false;
+        }
+        int shard = shardOf(windowId);
+        synchronized (lock) {
+            if (ensureShard(shard).remove(windowId) == null) {
+                return false;
+            }
+            dirtyShards.set(shard);
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            for (int i = 0; i < SHARD_COUNT; i++) {
+                ensureShard(i).clear();
+                dirtyShards.set(i);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * States are grouped by shard. Within a shard they are least recently saved first.
+     */
+    @Override
+    public Map<String, DialogState> snapshot() {
+        Map<String, DialogState> result = new LinkedHashMap<>();
+        synchronized (lock) {
+            for (int i = 0; i < SHARD_COUNT; i++) {
+                result.putAll(ensureShard(i));
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Get the cache for one shard, parsing its preference the first time it is needed.
+     * Callers must hold {@link #lock}.
+     */
+    private Map<String, DialogState> ensureShard(int shard) {
+        Map<String, DialogState> cache = shardCaches.get(shard);
+        if (!validShards.get(shard)) {
+            cache.clear();
+            cache.putAll(parseStored(preferences.get(shardKey(shard), null)));
+            validShards.set(shard);
+            logger.debug("Loaded {} dialog positions from preference shard {}", cache.size(), shard);
+        }
+        return cache;
+    }
+
+    /**
+     * Parse a stored value into a map of states, skipping invalid entries.
+     * Detects the binary encoding as well as the compact and legacy JSON formats.
+     */
+    private static Map<String, DialogState> parseStored(String json) {
+        Map<String, DialogState> result = new LinkedHashMap<>();
+        try {
+            if (json == null || json.isBlank() || json.equals("{}")) {
+                return result;
+            }
+            if (DialogStateBinaryCodec.isEncoded(json)) {
+                return DialogStateBinaryCodec.decode(json);
+            }
+
+            return DialogStateJsonReader.read(json);
+
+        } catch (Exception e) {
+            logger.warn("Failed to load dialog positions, returning empty map: {}", e.getMessage());
+            return new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * Write any pending changes to preferences immediately.
+     * <p>
+     * Each dirty shard is snapshotted under lock and serialized using compact JSON format:
+     * <ul>
+     *     <li>Short key names: w/h/m/si/sx/sy instead of width/height/modality/etc.</li>
+     *     <li>Integer coordinates: no ".0" suffix on position/size values</li>
+     *     <li>Default omission: modality=NONE, screenIndex=0, scale=1.0 are not written</li>
+     *     <li>No redundant title: map key serves as both windowId and title, unless a
+     *         title rule maps the title to a different windowId</li>
+     * </ul>
+     * If a shard would exceed {@link #MAX_JSON_LENGTH}, its least recently closed entries
+     * are evicted (see {@link #toJsonWithinLimit}). They are also dropped from the cache,
+     * so that it always matches what has been persisted. Clean shards are not touched, and
+     * a shard that fails to be written stays dirty for the next flush.
+     */
+    @Override
+    public void flush() {
+        synchronized (writeLock) {
+            List<Integer> shards = new ArrayList<>();
+            List<Map<String, DialogState>> snapshots = new ArrayList<>();
+            synchronized (lock) {
+                for (int i = dirtyShards.nextSetBit(0); i >= 0; i = dirtyShards.nextSetBit(i + 1)) {
+                    shards.add(i);
+                    snapshots.add(new LinkedHashMap<>(ensureShard(i)));
+                }
+                dirtyShards.clear();
+            }
+
+            for (int k = 0; k < shards.size(); k++) {
+                writeShard(shards.get(k), snapshots.get(k));
+            }
+            if (!shards.isEmpty()) {
+                // Write through to the backing store now, rather than leaving it to the
+                // preferences implementation, which may not get to it before QuPath exits
+                try {
+                    preferences.flush();
+                } catch (BackingStoreException e) {
+                    logger.warn("Failed to write dialog positions to the preferences store: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Serialize and write a snapshot of one shard. Callers must hold {@link #writeLock}.
+     */
+    private void writeShard(int shard, Map<String, DialogState> snapshot) {
+        DialogManagerEvents.ShardWritten event = new DialogManagerEvents.ShardWritten();
+        event.begin();
+        try {
+            List<String> evicted = new ArrayList<>();
+            boolean binary = binaryEncoding;
+            String json = binary
+                    ? DialogStateBinaryCodec.encodeWithinLimit(snapshot, MAX_JSON_LENGTH, evicted)
+                    : toJsonWithinLimit(snapshot, MAX_JSON_LENGTH, evicted);
+
+            int serializedSize = json.getBytes(StandardCharsets.UTF_8).length;
+            DialogManagerMetrics metrics = DialogManagerMetrics.getInstance();
+            metrics.add(DialogManagerMetrics.Counter.SERIALIZED_BYTES, serializedSize);
+            if (!evicted.isEmpty()) {
+                metrics.add(DialogManagerMetrics.Counter.EVICTIONS, evicted.size());
+                logger.warn("Dialog positions shard {} too large, evicted {} least recently closed entries",
+                        shard, evicted.size());
+                synchronized (lock) {
+                    Map<String, DialogState> cache = shardCaches.get(shard);
+                    for (String key : evicted) {
+                        // Only drop from the cache if it hasn't been updated since the snapshot
+                        if (cache.get(key) == snapshot.get(key)) {
+                            cache.remove(key);
+                        }
+                        logger.debug("Removed dialog position for '{}' to reduce size", key);
+                    }
+                }
+            }
+
+            preferences.put(shardKey(shard), json);
+            logger.debug("Saved {} dialog positions to preference shard {}",
+                    snapshot.size() - evicted.size(), shard);
+
+            if (event.shouldCommit()) {
+                event.shard = shard;
+                event.entryCount = snapshot.size() - evicted.size();
+                event.evictedCount = evicted.size();
+                event.serializedSize = serializedSize;
+                event.binary = binary;
+                event.commit();
+            }
+
+        } catch (Exception e) {
+            logger.error("Failed to save dialog positions: {}", e.getMessage(), e);
+            // The dirty flag was cleared when the snapshot was taken; set it again so that
+            // the next flush retries, rather than leaving the shard stale until it changes
+            synchronized (lock) {
+                dirtyShards.set(shard);
+            }
+        }
+    }
+
+    /**
+     * Serialize states to a compact JSON object no longer than {@code maxLength} characters.
+     * <p>
+     * Each entry is serialized exactly once and its size recorded. If the total is too long,
+     * entries are evicted in iteration order - which for the cache is least recently closed
+     * first - until the rest fit, and the surviving fragments are joined into the result.
+     *
+     * @param states States to serialize, oldest first
+     * @param maxLength Maximum length of the resulting JSON
+     * @param evicted Receives the keys of any evicted entries
+     * @return The JSON string
+     */
+    static String toJsonWithinLimit(Map<String, DialogState> states, int maxLength, List<String> evicted) {
+        int n = states.size();
+        String[] keys = new String[n];
+        String[] fragments = new String[n];
+        // Braces, plus a comma between each pair of entries
+        long total = 2 + Math.max(0, n - 1);
+        int i = 0;
+        for (var entry : states.entrySet()) {
+            keys[i] = entry.getKey();
+            fragments[i] = GSON.toJson(entry.getKey()) + ":" + GSON.toJson(stateToJson(entry.getValue()));
+            total += fragments[i].length();
+            i++;
+        }
+
+        int first = 0;
+        while (total > maxLength && first < n) {
+            total -= fragments[first].length() + (n - first > 1 ? 1 : 0);
+            evicted.add(keys[first]);
+            first++;
+        }
+
+        StringBuilder sb = new StringBuilder((int) Math.min(total, Integer.MAX_VALUE));
+        sb.append('{');
+        for (int k = first; k < n; k++) {
+            if (k > first) {
+                sb.append(',');
+            }
+            sb.append(fragments[k]);
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    /**
+     * Whether shards are written with the compact binary encoding rather than JSON.
+     */
+    boolean isBinaryEncodingEnabled() {
+        return binaryEncoding;
+    }
+
+    /**
+     * Set whether shards are written with the compact binary encoding rather than JSON.
+     * Either format is read regardless of this setting; changing it marks every shard
+     * dirty so the next flush rewrites it in the new format.
+     */
+    void setBinaryEncodingEnabled(boolean enabled) {
+        if (binaryEncoding == enabled) {
+            return;
+        }
+        binaryEncoding = enabled;
+        preferences.putBoolean(BINARY_ENCODING_KEY, enabled);
+        synchronized (lock) {
+            for (int i = 0; i < SHARD_COUNT; i++) {
+                ensureShard(i);
+                dirtyShards.set(i);
+            }
+        }
+    }
+
+    /**
+     * Serialize a DialogState to a compact JsonObject.
+     * Only includes non-default values to minimize JSON size.
+     */
+    static JsonObject stateToJson(DialogState state) {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("x", (int) Math.round(state.x()));
+        obj.addProperty("y", (int) Math.round(state.y()));
+        obj.addProperty("w", (int) Math.round(state.width()));
+        obj.addProperty("h", (int) Math.round(state.height()));
+        // Only include non-default values
+        if (state.title() != null && !state.title().equals(state.windowId())) {
+            obj.addProperty("title", state.title());
+        }
+        // Note: modality is not persisted - it's intrinsic to the window type and
+        // will be set correctly when the window is recreated by its owning code
+        if (state.screenIndex() != 0) {
+            obj.addProperty("si", state.screenIndex());
+        }
+        if (state.savedScaleX() != 1.0) {
+            obj.addProperty("sx", state.savedScaleX());
+        }
+        if (state.savedScaleY() != 1.0) {
+            obj.addProperty("sy", state.savedScaleY());
+        }
+        return obj;
+    }
+}
@@ -0,0 +1,141 @@
+package qupath.ext.dialogmanager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.lib.gui.QuPathGUI;
+import qupath.lib.projects.Project;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Keeps a separate dialog layout for each QuPath project.
+ * <p>
+ * When enabled, opening a project switches the active {@link DialogStateStore} to that
+ * project's profile: a journal file under {@code dialog-manager/projects} in the QuPath user
+ * directory. Profiles are opened lazily, the first time their project becomes active, and
+ * only the active profile is held in memory. A project without a profile starts from the
+ * layout that was active before it was opened. Closing the project returns to the global
+ * layout.
+ * <p>
+ * After each switch, every open tracked window is moved to its position in the new
+ * profile in a single pass.
+ */
+public final class ProjectLayoutProfiles {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectLayoutProfiles.class);
+
+    private static final String PROFILE_DIRECTORY = "projects";
+
+    private static ProjectLayoutProfiles instance;
+
+    private QuPathGUI qupath;
+
+    // Path of the project whose profile is active, or null for the global layout
+    private Path activeProject;
+
+    private ProjectLayoutProfiles() {
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized ProjectLayoutProfiles getInstance() {
+        if (instance == null) {
+            instance = new ProjectLayoutProfiles();
+        }
+        return instance;
+    }
+
+    /**
+     * Start following QuPath's current project. Call this during extension installation,
+     * after the {@link DialogPositionManager} has been initialized.
+     *
+     * @param qupath The QuPath instance whose project should be followed
+     */
+    public void install(QuPathGUI qupath) {
+        this.qupath = qupath;
+        qupath.projectProperty().addListener((obs, oldProject, newProject) -> activate(newProject));
+        activate(qupath.getProject());
+    }
+
+    /**
+     * Whether each project keeps its own dialog layout.
+     */
+    public boolean isEnabled() {
+        return DialogPositionPreferences.isProjectProfilesEnabled();
+    }
+
+    /**
+     * Set whether each project keeps its own dialog layout, switching to the current
+     * project's profile (or back to the global layout) straight away.
+     * Must be called on the FX application thread.
+     */
+    public void setEnabled(boolean enabled) {
+        DialogPositionPreferences.setProjectProfilesEnabled(enabled);
+        if (qupath != null) {
+            activate(qupath.getProject());
+        }
+    }
+
+    /**
+     * Get the path of the project whose layout is active, or null if the global layout is.
+     */
+    public Path getActiveProject() {
+        return activeProject;
+    }
+
+    private void activate(Project<?> project) {
+        Path projectPath = project == null || !isEnabled() ? null : project.getPath();
+        if (Objects.equals(projectPath, activeProject)) {
+            return;
+        }
+
+        DialogStateStore next = projectPath == null
+                ? DialogPositionPreferences.createConfiguredStore()
+                : openProfile(projectPath);
+        if (next == null) {
+            return;
+        }
+        DialogPositionPreferences.setStore(next);
+        activeProject = projectPath;
+        logger.info("Using {} dialog layout", projectPath == null ? "global" : "project");
+        DialogPositionManager.getInstance().applySavedStates();
+    }
+
+    /**
+     * Open the profile for a project, or return null if it can't be opened.
+     * A new profile starts with the layout that is currently active.
+     */
+    private static DialogStateStore openProfile(Path projectPath) {
+        Path directory = DialogPositionPreferences.getStorageDirectory();
+        if (directory == null) {
+            logger.warn("No QuPath user directory set, project dialog layouts are not available");
+            return null;
+        }
+        try {
+            return FileDialogStateStore.open(
+                    directory.resolve(PROFILE_DIRECTORY).resolve(profileName(projectPath)),
+                    DialogPositionPreferences::getAll,
+                    false);
+        } catch (IOException e) {
+            logger.warn("Unable to open dialog layout for project {}: {}", projectPath, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get the directory name for a project's profile: the project directory name, made
+     * safe for the file system, plus a hash of its full path to tell apart projects with
+     * the same name.
+     */
+    static String profileName(Path projectPath) {
+        Path absolute = projectPath.toAbsolutePath().normalize();
+        // Projects are identified by their project.qpproj file; name them after its directory
+        Path projectDir = absolute.getParent() == null ? absolute : absolute.getParent();
+        Path fileName = projectDir.getFileName();
+        String name = fileName == null ? "project" : fileName.toString().replaceAll("[^A-Za-z0-9._-]", "_");
+        return name + "-" + Integer.toHexString(absolute.toString().hashCode());
+    }
+}
@@ -0,0 +1,220 @@
+package qupath.ext.dialogmanager;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers where windows were on each screen configuration.
+ * <p>
+ * Positions are recorded against the fingerprint of the configuration they were seen
+ * on, so that docking or undocking a laptop can put every window back where it was the
+ * last time that configuration was in use. Lookups are a single hash lookup on the
+ * fingerprint.
+ * <p>
+ * The cache is bounded to {@value #MAX_CONFIGURATIONS} configurations and
+ * {@value #MAX_WINDOWS_PER_CONFIGURATION} windows per configuration; in both cases the
+ * least recently used entry is dropped first.
+ * <p>
+ * Methods are synchronized so that {@link #write(Path)} can be called from a background
+ * thread or a shutdown hook, but recording is expected to happen on the FX application
+ * thread. Writing only holds the lock while taking a snapshot, so recording is never
+ * held up by file IO.
+ */
+final class ScreenLayoutCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScreenLayoutCache.class);
+
+    /**
+     * Maximum number of screen configurations to remember.
+     */
+    static final int MAX_CONFIGURATIONS = 8;
+
+    /**
+     * Maximum number of windows to remember for each configuration.
+     */
+    static final int MAX_WINDOWS_PER_CONFIGURATION = 256;
+
+    /**
+     * Positions recorded for one configuration. Windows are access-ordered,
+     * least recently used first.
+     */
+    private static final class Entry {
+        private DialogState mainWindow;
+        private long updatedAt;
+        private final Map<String, DialogState> windows = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DialogState> eldest) {
+                return size() > MAX_WINDOWS_PER_CONFIGURATION;
+            }
+        };
+    }
+
+    // Access-ordered, so iteration starts with the least recently used configuration
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_CONFIGURATIONS;
+        }
+    };
+
+    private boolean dirty;
+
+    // Serializes writes, so that a shutdown write can't interleave with a background one
+    private final Object writeLock = new Object();
+
+    /**
+     * Record the latest position of a dialog on a screen configuration.
+     */
+    synchronized void recordWindow(String fingerprint, DialogState state) {
+        Entry entry = entries.computeIfAbsent(fingerprint, k -> new Entry());
+        entry.windows.put(state.windowId(), state);
+        entry.updatedAt = System.currentTimeMillis();
+        dirty = true;
+    }
+
+    /**
+     * Record the latest position of the main window on a screen configuration.
+     */
+    synchronized void recordMainWindow(String fingerprint, DialogState state) {
+        Entry entry = entries.computeIfAbsent(fingerprint, k -> new Entry());
+        entry.mainWindow = state;
+        entry.updatedAt = System.currentTimeMillis();
+        dirty = true;
+    }
+
+    /**
+     * Get the last recorded position of a dialog on a screen configuration.
+     *
+     * @return The state, or null if the dialog has not been seen on that configuration
+     */
+    synchronized DialogState getWindow(String fingerprint, String windowId) {
+        Entry entry = entries.get(fingerprint);
+        return entry == null ? null : entry.windows.get(windowId);
+    }
+
+    /**
+     * Get a snapshot of everything recorded for a screen configuration.
+     *
+     * @return The layout, or null if the configuration has not been seen
+     */
+    synchronized WindowLayout getLayout(String fingerprint) {
+        Entry entry = entries.get(fingerprint);
+        return entry == null ? null : toLayout(fingerprint, entry);
+    }
+
+    /**
+     * Forget a dialog on every screen configuration.
+     */
+    synchronized void removeWindow(String windowId) {
+        for (Entry entry : entries.values()) {
+            if (entry.windows.remove(windowId) != null) {
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Get the number of configurations currently remembered.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Forget everything.
+     */
+    synchronized void clear() {
+        if (!entries.isEmpty()) {
+            entries.clear();
+            dirty = true;
+        }
+    }
+
+    /**
+     * Replace the cache contents with those of a file written by {@link #write(Path)}.
+     * A missing or unreadable file leaves the cache empty.
+     */
+    synchronized void read(Path file) {
+        entries.clear();
+        dirty = false;
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             JsonReader reader = new JsonReader(in)) {
+            // Written least recently used first, so inserting in order restores the LRU order
+            reader.beginArray();
+            while (reader.hasNext()) {
+                WindowLayout layout = WindowLayoutJson.read(reader);
+                Entry entry = new Entry();
+                entry.mainWindow = layout.mainWindow();
+                entry.updatedAt = layout.savedAt();
+                entry.windows.putAll(layout.windows());
+                entries.put(layout.fingerprint(), entry);
+            }
+            reader.endArray();
+            logger.debug("Loaded window layouts for {} screen configurations", entries.size());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load window layouts from {}: {}", file, e.getMessage());
+            entries.clear();
+        }
+    }
+
+    /**
+     * Write the cache to a file if anything has changed since it was last read or written.
+     * The file is written to a temporary file first and then moved into place.
+     */
+    void write(Path file) {
+        synchronized (writeLock) {
+            List<WindowLayout> layouts;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                // Snapshot without touching the access order
+                layouts = new ArrayList<>(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    layouts.add(toLayout(e.getKey(), e.getValue()));
+                }
+                // Anything recorded from here on marks the cache dirty again
+                dirty = false;
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(file.getParent());
+                try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+                     JsonWriter writer = new JsonWriter(out)) {
+                    writer.beginArray();
+                    for (WindowLayout layout : layouts) {
+                        WindowLayoutJson.write(writer, layout);
+                    }
+                    writer.endArray();
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logger.warn("Failed to save window layouts to {}: {}", file, e.getMessage());
+                synchronized (this) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    private static WindowLayout toLayout(String fingerprint, Entry entry) {
+        return new WindowLayout(fingerprint, entry.updatedAt, entry.mainWindow, entry.windows);
+    }
+}
@@ -0,0 +1,188 @@
+package qupath.ext.dialogmanager;
+
+import javafx.geometry.Rectangle2D;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Sorted interval index over screen rectangles, used to answer visibility and
+ * best-screen queries in a single pass.
+ * <p>
+ * Rectangles are sorted by their left edge. A query only visits the run of screens
+ * whose left edge lies between {@code x - maxWidth} and the right edge of the query,
+ * which are the only ones that can overlap it horizontally. Queries do not allocate.
+ * <p>
+ * Results are reported as indices into the array the index was built from. When
+ * several screens qualify equally, the lowest index wins, matching the order of
+ * {@code Screen.getScreens()}.
+ */
+final class ScreenSpatialIndex {
+
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+    private final int[] screenIndex;
+    private final double maxWidth;
+
+    /**
+     * Build an index over the given rectangles.
+     *
+     * @param rects Screen rectangles, in screen order
+     */
+    ScreenSpatialIndex(Rectangle2D[] rects) {
+        int n = rects.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> rects[i].getMinX()));
+
+        minX = new double[n];
+        minY = new double[n];
+        maxX = new double[n];
+        maxY = new double[n];
+        screenIndex = new int[n];
+        double widest = 0;
+        for (int k = 0; k < n; k++) {
+            Rectangle2D r = rects[order[k]];
+            minX[k] = r.getMinX();
+            minY[k] = r.getMinY();
+            maxX[k] = r.getMaxX();
+            maxY[k] = r.getMaxY();
+            screenIndex[k] = order[k];
+            widest = Math.max(widest, r.getWidth());
+        }
+        maxWidth = widest;
+    }
+
+    /**
+     * Find the screen containing a point (edges inclusive).
+     *
+     * @return The screen index, or -1 if no screen contains the point
+     */
+    int screenAt(double x, double y) {
+        int best = -1;
+        for (int k = firstCandidate(x), end = endCandidate(x); k < end; k++) {
+            if (x >= minX[k] && x <= maxX[k] && y >= minY[k] && y <= maxY[k]) {
+                best = lowerIndex(best, screenIndex[k]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Find the screen with the largest overlap with a rectangle.
+     *
+     * @return The screen index, or -1 if the rectangle overlaps no screen
+     */
+    int maxOverlapScreen(double x, double y, double width, double height) {
+        int best = -1;
+        double bestArea = 0;
+        for (int k = firstCandidate(x), end = endCandidate(x + width); k < end; k++) {
+            double area = overlapWidth(k, x, width) * overlapHeight(k, y, height);
+            if (area > bestArea || (area == bestArea && area > 0 && screenIndex[k] < best)) {
+                best = screenIndex[k];
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Find the best screen for a rectangle: the screen containing its top-left corner
+     * if there is one, otherwise the screen it overlaps most.
+     *
+     * @return The screen index, or -1 if the rectangle is not on any screen
+     */
+    int bestScreenFor(double x, double y, double width, double height) {
+        int owner = -1;
+        int best = -1;
+        double bestArea = 0;
+        for (int k = firstCandidate(x), end = endCandidate(x + width); k < end; k++) {
+            if (x >= minX[k] && x <= maxX[k] && y >= minY[k] && y <= maxY[k]) {
+                owner = lowerIndex(owner, screenIndex[k]);
+            }
+            double area = overlapWidth(k, x, width) * overlapHeight(k, y, height);
+            if (area > bestArea || (area == bestArea && area > 0 && screenIndex[k] < best)) {
+                best = screenIndex[k];
+                bestArea = area;
+            }
+        }
+        return owner >= 0 ? owner : best;
+    }
+
+    /**
+     * Compute the total area of a rectangle that falls on screens.
+     * Screens are assumed not to overlap each other.
+     */
+    double visibleArea(double x, double y, double width, double height) {
+        double total = 0;
+        for (int k = firstCandidate(x), end = endCandidate(x + width); k < end; k++) {
+            total += overlapWidth(k, x, width) * overlapHeight(k, y, height);
+        }
+        return total;
+    }
+
+    /**
+     * Check whether at least {@code minVisible} x {@code minVisible} of a rectangle
+     * falls on a single screen.
+     */
+    boolean isSufficientlyVisible(double x, double y, double width, double height, double minVisible) {
+        for (int k = firstCandidate(x), end = endCandidate(x + width); k < end; k++) {
+            if (overlapWidth(k, x, width) >= minVisible && overlapHeight(k, y, height) >= minVisible) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double overlapWidth(int k, double x, double width) {
+        return Math.max(0, Math.min(x + width, maxX[k]) - Math.max(x, minX[k]));
+    }
+
+    private double overlapHeight(int k, double y, double height) {
+        return Math.max(0, Math.min(y + height, maxY[k]) - Math.max(y, minY[k]));
+    }
+
+    /**
+     * First sorted position whose screen could reach {@code x}: any screen starting
+     * before {@code x - maxWidth} must end before {@code x}.
+     */
+    private int firstCandidate(double x) {
+        double from = x - maxWidth;
+        int lo = 0;
+        int hi = minX.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (minX[mid] < from) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * One past the last sorted position whose screen starts at or before {@code right}.
+     */
+    private int endCandidate(double right) {
+        int lo = 0;
+        int hi = minX.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (minX[mid] <= right) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int lowerIndex(int current, int candidate) {
+        return current < 0 ? candidate : Math.min(current, candidate);
+    }
+}
@@ -0,0 +1,309 @@
+package qupath.ext.dialogmanager;
+
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Rectangle2D;
+import javafx.stage.Screen;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Immutable snapshot of the screen configuration.
+ * <p>
+ * Bounds, visual bounds, output scales and the configuration fingerprint are captured
+ * once when the snapshot is built, so geometry checks can read plain arrays instead of
+ * calling {@link Screen#getScreens()} and re-walking each screen every time.
+ * <p>
+ * {@link #current()} returns the latest snapshot. It is rebuilt only when
+ * {@code Screen.getScreens()} reports a change, at which point registered
+ * {@link Listener}s are notified with both the old and new snapshot.
+ * <p>
+ * Point, overlap and visibility queries against the visual bounds are answered by a
+ * {@link ScreenSpatialIndex} built with the snapshot.
+ */
+public final class ScreenTopology {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScreenTopology.class);
+
+    /**
+     * Listener notified when the screen configuration changes.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the FX application thread after the snapshot has been rebuilt.
+         *
+         * @param previous The snapshot before the change
+         * @param current The snapshot after the change
+         */
+        void topologyChanged(ScreenTopology previous, ScreenTopology current);
+    }
+
+    private static volatile ScreenTopology current;
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Screen[] screens;
+    private final Rectangle2D[] bounds;
+    private final Rectangle2D[] visualBounds;
+    private final double[] scaleX;
+    private final double[] scaleY;
+    private final int primaryIndex;
+    private final String fingerprint;
+    private final ScreenSpatialIndex visualIndex;
+
+    private ScreenTopology(Screen[] screens, Rectangle2D[] bounds, Rectangle2D[] visualBounds,
+                           double[] scaleX, double[] scaleY, int primaryIndex) {
+        this.screens = screens;
+        this.bounds = bounds;
+        this.visualBounds = visualBounds;
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+        this.primaryIndex = primaryIndex;
+        this.fingerprint = buildFingerprint();
+        this.visualIndex = new ScreenSpatialIndex(visualBounds);
+    }
+
+    /**
+     * Get the snapshot of the current screen configuration.
+     * The first call builds it and starts listening for screen changes.
+     */
+    public static ScreenTopology current() {
+        ScreenTopology topology = current;
+        if (topology == null) {
+            synchronized (ScreenTopology.class) {
+                if (current == null) {
+                    current = fromScreens(Screen.getScreens());
+                    Screen.getScreens().addListener((ListChangeListener<Screen>) change -> rebuild());
+                }
+                topology = current;
+            }
+        }
+        return topology;
+    }
+
+    /**
+     * Register a listener for screen configuration changes.
+     */
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a previously registered listener.
+     */
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private static void rebuild() {
+        update(fromScreens(Screen.getScreens()));
+    }
+
+    /**
+     * Replace the current snapshot and notify listeners. Called when the screens change,
+     * and by tests to stand in for a screen configuration without a display.
+     */
+    static void update(ScreenTopology updated) {
+        ScreenTopology previous;
+        synchronized (ScreenTopology.class) {
+            previous = current;
+            current = updated;
+        }
+        logger.debug("Screen configuration changed: {} -> {}",
+                previous == null ? "(none)" : previous.getFingerprint(), updated.getFingerprint());
+        for (Listener listener : listeners) {
+            try {
+                listener.topologyChanged(previous, updated);
+            } catch (Exception e) {
+                logger.warn("Screen topology listener failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Build a snapshot from a list of JavaFX screens.
+     */
+    static ScreenTopology fromScreens(List<Screen> screenList) {
+        int n = screenList.size();
+        Screen[] screens = new Screen[n];
+        Rectangle2D[] bounds = new Rectangle2D[n];
+        Rectangle2D[] visualBounds = new Rectangle2D[n];
+        double[] scaleX = new double[n];
+        double[] scaleY = new double[n];
+        Screen primary = Screen.getPrimary();
+        int primaryIndex = 0;
+        for (int i = 0; i < n; i++) {
+            Screen screen = screenList.get(i);
+            screens[i] = screen;
+            bounds[i] = screen.getBounds();
+            visualBounds[i] = screen.getVisualBounds();
+            scaleX[i] = screen.getOutputScaleX();
+            scaleY[i] = screen.getOutputScaleY();
+            if (screen == primary) {
+                primaryIndex = i;
+            }
+        }
+        return new ScreenTopology(screens, bounds, visualBounds, scaleX, scaleY, primaryIndex);
+    }
+
+    /**
+     * Build a snapshot from screen geometry alone, without JavaFX screens, e.g. for tests
+     * and benchmarks that run without a display. {@link #getScreen(int)} returns null
+     * for every index of such a snapshot.
+     *
+     * @param bounds Full bounds of each screen
+     * @param visualBounds Visual bounds of each screen
+     * @param scaleX Horizontal output scale of each screen
+     * @param scaleY Vertical output scale of each screen
+     * @param primaryIndex Index of the primary screen
+     */
+    static ScreenTopology of(Rectangle2D[] bounds, Rectangle2D[] visualBounds,
+                             double[] scaleX, double[] scaleY, int primaryIndex) {
+        return new ScreenTopology(new Screen[bounds.length], bounds.clone(), visualBounds.clone(),
+                scaleX.clone(), scaleY.clone(), primaryIndex);
+    }
+
+    /**
+     * Get the number of screens.
+     */
+    public int size() {
+        return screens.length;
+    }
+
+    /**
+     * Get the JavaFX screen at an index.
+     */
+    public Screen getScreen(int index) {
+        return screens[index];
+    }
+
+    /**
+     * Get the index of a JavaFX screen, or -1 if it is not part of this snapshot.
+     */
+    public int indexOf(Screen screen) {
+        for (int i = 0; i < screens.length; i++) {
+            if (screens[i] == screen) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the full bounds of the screen at an index.
+     */
+    public Rectangle2D getBounds(int index) {
+        return bounds[index];
+    }
+
+    /**
+     * Get the visual bounds (excluding task bars, menu bars etc.) of the screen at an index.
+     */
+    public Rectangle2D getVisualBounds(int index) {
+        return visualBounds[index];
+    }
+
+    /**
+     * Get the horizontal output scale of the screen at an index.
+     */
+    public double getScaleX(int index) {
+        return scaleX[index];
+    }
+
+    /**
+     * Get the vertical output scale of the screen at an index.
+     */
+    public double getScaleY(int index) {
+        return scaleY[index];
+    }
+
+    /**
+     * Get the index of the primary screen.
+     */
+    public int getPrimaryIndex() {
+        return primaryIndex;
+    }
+
+    /**
+     * Get the configuration fingerprint (count, bounds and scale of every screen).
+     * Any change to the monitors produces a different fingerprint.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Get the full bounds of the screens in this snapshot that have no screen with the
+     * same bounds in another one. Called on an older snapshot with the current one, this
+     * gives the screens that were removed; the other way round, the screens that were added.
+     * A screen that changed resolution or position counts as both.
+     */
+    public List<Rectangle2D> boundsMissingFrom(ScreenTopology other) {
+        List<Rectangle2D> missing = new ArrayList<>();
+        for (Rectangle2D b : bounds) {
+            if (!Arrays.asList(other.bounds).contains(b)) {
+                missing.add(b);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Find the screen whose visual bounds contain a point.
+     *
+     * @return The screen index, or -1 if the point is not on any screen
+     */
+    public int screenAt(double x, double y) {
+        return visualIndex.screenAt(x, y);
+    }
+
+    /**
+     * Find the screen whose visual bounds overlap a rectangle the most.
+     *
+     * @return The screen index, or -1 if the rectangle is not on any screen
+     */
+    public int maxOverlapScreen(double x, double y, double width, double height) {
+        return visualIndex.maxOverlapScreen(x, y, width, height);
+    }
+
+    /**
+     * Find the screen containing the top-left corner of a rectangle, or failing that
+     * the screen it overlaps most.
+     *
+     * @return The screen index, or -1 if the rectangle is not on any screen
+     */
+    public int bestScreenFor(double x, double y, double width, double height) {
+        return visualIndex.bestScreenFor(x, y, width, height);
+    }
+
+    /**
+     * Compute how much of a rectangle's area lies within the screens' visual bounds.
+     */
+    public double visibleArea(double x, double y, double width, double height) {
+        return visualIndex.visibleArea(x, y, width, height);
+    }
+
+    /**
+     * Check whether at least {@code minVisible} x {@code minVisible} of a rectangle
+     * lies within the visual bounds of a single screen.
+     */
+    public boolean isSufficientlyVisible(double x, double y, double width, double height, double minVisible) {
+        return visualIndex.isSufficientlyVisible(x, y, width, height, minVisible);
+    }
+
+    private String buildFingerprint() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(bounds.length).append(":");
+        for (int i = 0; i < bounds.length; i++) {
+            Rectangle2D b = bounds[i];
+            sb.append(String.format("%.0fx%.0f@%.0f,%.0f/%.2fx%.2f;",
+                    b.getWidth(), b.getHeight(), b.getMinX(), b.getMinY(),
+                    scaleX[i], scaleY[i]));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,140 @@
+package qupath.ext.dialogmanager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Maps window titles to stable window IDs.
+ * <p>
+ * Some dialogs include the current image or file name in their title, which would
+ * otherwise give them a new ID (and a new saved position) for every image. Rules are
+ * regular expressions, compiled once when the rules are parsed, and written one per line:
+ * <ul>
+ *   <li>{@code pattern => replacement}: the first match in the title is replaced, so
+ *       groups can be referenced as {@code $1}</li>
+ *   <li>{@code pattern}: the first match in the title is removed</li>
+ *   <li>Blank lines and lines starting with {@code #} are ignored</li>
+ * </ul>
+ * The first rule that matches a title is used. If no rule matches, or the result is
+ * blank, the title itself is the ID.
+ * <p>
+ * Instances are immutable and safe to share between threads.
+ */
+public final class TitleNormalizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TitleNormalizer.class);
+
+    private static final String REPLACEMENT_SEPARATOR = "=>";
+
+    /**
+     * Rules used until the user changes them.
+     */
+    public static final String DEFAULT_RULES = String.join("\n",
+            "# Measurement tables, e.g. \"Detections: image.svs\" -> \"Detections\"",
+            "^(Annotations|Detections|Cells|Tiles|TMA cores): .+$ => $1",
+            "# Titles ending in a file name, e.g. \"Script editor - script.groovy\" -> \"Script editor\"",
+            "\\s+[-\\u2013:]\\s+[^\\\\/]*\\.[A-Za-z0-9]{2,6}$"
+    );
+
+    private record Rule(Pattern pattern, String replacement) {
+    }
+
+    private final String text;
+    private final List<Rule> rules;
+    private final List<String> errors;
+
+    private TitleNormalizer(String text, List<Rule> rules, List<String> errors) {
+        this.text = text;
+        this.rules = rules;
+        this.errors = errors;
+    }
+
+    /**
+     * Parse rules, one per line. Lines that are not valid regular expressions are skipped
+     * and reported by {@link #getErrors()}.
+     *
+     * @param text The rules, or null for none
+     */
+    public static TitleNormalizer parse(String text) {
+        if (text == null) {
+            text = "";
+        }
+        List<Rule> rules = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        String[] lines = text.split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String regex = line;
+            String replacement = "";
+            int separator = line.lastIndexOf(REPLACEMENT_SEPARATOR);
+            if (separator >= 0) {
+                regex = line.substring(0, separator).strip();
+                replacement = line.substring(separator + REPLACEMENT_SEPARATOR.length()).strip();
+            }
+            try {
+                rules.add(new Rule(Pattern.compile(regex), replacement));
+            } catch (PatternSyntaxException e) {
+                errors.add("Line " + (i + 1) + ": " + e.getDescription());
+            }
+        }
+        if (!errors.isEmpty()) {
+            logger.warn("Skipped {} invalid window title rule(s): {}", errors.size(), errors);
+        }
+        return new TitleNormalizer(text, List.copyOf(rules), Collections.unmodifiableList(errors));
+    }
+
+    /**
+     * Get the window ID for a title.
+     *
+     * @param title The window title, already trimmed
+     * @return The normalized title, or the title itself if no rule applies
+     */
+    public String normalize(String title) {
+        for (Rule rule : rules) {
+            Matcher matcher = rule.pattern().matcher(title);
+            if (matcher.find()) {
+                String normalized;
+                try {
+                    normalized = matcher.replaceFirst(rule.replacement()).strip();
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    // Replacement refers to a group the pattern doesn't have
+                    logger.debug("Window title rule {} failed: {}", rule.pattern(), e.getMessage());
+                    continue;
+                }
+                return normalized.isEmpty() ? title : normalized;
+            }
+        }
+        return title;
+    }
+
+    /**
+     * Get the rules as they were written.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Get the number of valid rules.
+     */
+    public int getRuleCount() {
+        return rules.size();
+    }
+
+    /**
+     * Get a description of each line that could not be parsed.
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,83 @@
+package qupath.ext.dialogmanager;
+
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Persistence keys for windows that have no title.
+ * <p>
+ * A window without a title is identified by its structure instead: the class of its
+ * scene root, the root's style classes, its modality and the ID of its owner window.
+ * These are the same each time a given dialog is created, so the key can be used to
+ * save and restore its position like a title.
+ */
+final class WindowKeys {
+
+    /**
+     * Prefix of all structural keys, which keeps them apart from window titles in the UI.
+     */
+    private static final String UNTITLED_PREFIX = "Untitled ";
+
+    // IDs used by earlier versions for untitled windows, which change every time a window
+    // is created. Only stages were tracked, so the ID was "Stage@" or, for an anonymous
+    // subclass, just "@", followed by the window's identity hash code.
+    private static final Pattern LEGACY_FALLBACK_KEY = Pattern.compile("(Stage)?@\\d{1,10}");
+
+    private WindowKeys() {
+        // Utility class - no instantiation
+    }
+
+    /**
+     * Build the structural key for an untitled window.
+     *
+     * @param window The window
+     * @param ownerId The ID of the window's owner, or null if it has none
+     * @return The key, e.g. {@code "Untitled (BorderPane, dialog-pane, WINDOW_MODAL, owner: QuPath)"}
+     */
+    static String structuralKey(Window window, String ownerId) {
+        StringBuilder sb = new StringBuilder(UNTITLED_PREFIX).append('(');
+        Scene scene = window.getScene();
+        Parent root = scene == null ? null : scene.getRoot();
+        if (root == null) {
+            sb.append(window.getClass().getSimpleName());
+        } else {
+            Class<?> rootClass = root.getClass();
+            // Anonymous and local classes have no simple name
+            sb.append(rootClass.getSimpleName().isEmpty() ? rootClass.getName() : rootClass.getSimpleName());
+            List<String> styleClasses = root.getStyleClass();
+            if (styleClasses != null && !styleClasses.isEmpty()) {
+                // Sorted, so that the order classes were added in doesn't matter
+                sb.append(", ").append(String.join(" ", new TreeSet<>(styleClasses)));
+            }
+        }
+        Modality modality = window instanceof Stage stage ? stage.getModality() : Modality.NONE;
+        sb.append(", ").append(modality);
+        if (ownerId != null) {
+            sb.append(", owner: ").append(ownerId);
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Check whether a key is a structural key built by {@link #structuralKey(Window, String)}.
+     */
+    static boolean isStructuralKey(String key) {
+        return key != null && key.startsWith(UNTITLED_PREFIX + "(");
+    }
+
+    /**
+     * Check whether a key is a per-instance fallback ID written by an earlier version,
+     * e.g. {@code "Stage@926214965"}. Titles that merely contain an "@", such as
+     * {@code "Export@2024"}, are not.
+     */
+    static boolean isLegacyFallbackKey(String key) {
+        return key != null && LEGACY_FALLBACK_KEY.matcher(key).matches();
+    }
+}
@@ -0,0 +1,31 @@
+package qupath.ext.dialogmanager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the positions of the main window and every open tracked dialog,
+ * together with the screen configuration they were captured on.
+ *
+ * @param fingerprint Screen configuration fingerprint at capture time
+ *                    (see {@link ScreenTopology#getFingerprint()})
+ * @param savedAt Capture time in milliseconds since the epoch
+ * @param mainWindow State of the main QuPath window, or null if it was not captured
+ * @param windows States of the dialogs, keyed by windowId
+ */
+public record WindowLayout(
+        String fingerprint,
+        long savedAt,
+        DialogState mainWindow,
+        Map<String, DialogState> windows
+) {
+
+    /**
+     * Compact constructor that takes an unmodifiable copy of the windows.
+     */
+    public WindowLayout {
+        if (fingerprint == null) fingerprint = "";
+        windows = windows == null ? Map.of() : Collections.unmodifiableMap(new LinkedHashMap<>(windows));
+    }
+}
@@ -0,0 +1,77 @@
+package qupath.ext.dialogmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Streaming JSON encoding for {@link WindowLayout}s.
+ * <p>
+ * A layout is written as {@code {"fp": ..., "t": ..., "main": {...}, "windows": {...}}},
+ * where each state uses the same compact keys as the saved dialog positions.
+ */
+final class WindowLayoutJson {
+
+    private static final Gson GSON = new GsonBuilder().create();
+
+    private WindowLayoutJson() {
+        // Utility class - no instantiation
+    }
+
+    /**
+     * Write a layout as a JSON object.
+     */
+    static void write(JsonWriter writer, WindowLayout layout) throws IOException {
+        writer.beginObject();
+        writer.name("fp").value(layout.fingerprint());
+        writer.name("t").value(layout.savedAt());
+        if (layout.mainWindow() != null) {
+            writer.name("main");
+            GSON.toJson(PreferencesDialogStateStore.stateToJson(layout.mainWindow()), writer);
+        }
+        writer.name("windows").beginObject();
+        for (Map.Entry<String, DialogState> entry : layout.windows().entrySet()) {
+            writer.name(entry.getKey());
+            GSON.toJson(PreferencesDialogStateStore.stateToJson(entry.getValue()), writer);
+        }
+        writer.endObject();
+        writer.endObject();
+    }
+
+    /**
+     * Read a layout object from the reader's current position.
+     * Unknown fields are skipped, and invalid window entries are dropped.
+     */
+    static WindowLayout read(JsonReader reader) throws IOException {
+        String fingerprint = "";
+        long savedAt = 0;
+        DialogState mainWindow = null;
+        Map<String, DialogState> windows = Map.of();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "fp" -> fingerprint = reader.nextString();
+                case "t" -> savedAt = reader.nextLong();
+                case "main" -> mainWindow = reader.peek() == JsonToken.BEGIN_OBJECT
+                        ? DialogStateJsonReader.readState(reader, DialogPositionManager.MAIN_WINDOW_ID)
+                        : skip(reader);
+                case "windows" -> windows = DialogStateJsonReader.readStates(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new WindowLayout(fingerprint, savedAt, mainWindow, windows);
+    }
+
+    private static DialogState skip(JsonReader reader) throws IOException {
+        reader.skipValue();
+        return null;
+    }
+}
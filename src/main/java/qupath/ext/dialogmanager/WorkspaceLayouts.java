@@ -0,0 +1,214 @@
+package qupath.ext.dialogmanager;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Named snapshots of the whole window layout ("workspaces").
+ * <p>
+ * Saving a layout captures the main window and every open tracked dialog in one
+ * {@link WindowLayout}. A name can hold one variant per screen configuration, keyed by
+ * the screen fingerprint: applying a layout uses the variant captured on the current
+ * configuration if there is one, and otherwise the most recently saved variant, with
+ * off-screen windows recovered as usual.
+ * <p>
+ * Layouts are kept in {@value #FILE_NAME} in the extension's folder of the QuPath user
+ * directory, which is read the first time layouts are needed and rewritten whenever
+ * one is saved or removed. Without a user directory, layouts only last for the session.
+ * <p>
+ * All methods must be called on the FX application thread.
+ */
+public final class WorkspaceLayouts {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceLayouts.class);
+
+    private static final String FILE_NAME = "layouts.json";
+
+    /**
+     * Maximum number of screen configurations remembered for each name.
+     * The least recently saved variant is dropped first.
+     */
+    private static final int MAX_VARIANTS_PER_NAME = 8;
+
+    private static WorkspaceLayouts instance;
+
+    // Name -> (fingerprint -> layout), variants ordered by save time, least recent first.
+    // Null until loaded.
+    private Map<String, Map<String, WindowLayout>> layouts;
+
+    private WorkspaceLayouts() {
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized WorkspaceLayouts getInstance() {
+        if (instance == null) {
+            instance = new WorkspaceLayouts();
+        }
+        return instance;
+    }
+
+    /**
+     * Get the names of all saved layouts, in alphabetical order.
+     */
+    public List<String> getLayoutNames() {
+        return new ArrayList<>(ensureLoaded().keySet());
+    }
+
+    /**
+     * Capture the current layout and save it under a name, replacing any layout with that
+     * name captured on the same screen configuration.
+     *
+     * @param name The layout name
+     * @return The captured layout
+     */
+    public WindowLayout saveLayout(String name) {
+        WindowLayout layout = DialogPositionManager.getInstance().captureLayout();
+        Map<String, WindowLayout> variants = ensureLoaded().computeIfAbsent(name, k -> new LinkedHashMap<>());
+        // Re-insert so that variants stay ordered by save time
+        variants.remove(layout.fingerprint());
+        variants.put(layout.fingerprint(), layout);
+        Iterator<String> oldest = variants.keySet().iterator();
+        while (variants.size() > MAX_VARIANTS_PER_NAME) {
+            oldest.next();
+            oldest.remove();
+        }
+        write();
+        logger.info("Saved layout '{}' with {} dialogs", name, layout.windows().size());
+        return layout;
+    }
+
+    /**
+     * Apply a saved layout to the open windows.
+     *
+     * @param name The layout name
+     * @return true if a layout with the name exists
+     */
+    public boolean applyLayout(String name) {
+        WindowLayout layout = findLayout(name, ScreenTopology.current().getFingerprint());
+        if (layout == null) {
+            logger.warn("No saved layout named '{}'", name);
+            return false;
+        }
+        DialogPositionManager.getInstance().applyLayout(layout);
+        logger.info("Applied layout '{}'", name);
+        return true;
+    }
+
+    /**
+     * Find the best variant of a layout for a screen configuration: the one captured on
+     * that configuration if there is one, otherwise the most recently saved one.
+     *
+     * @return The layout, or null if there is no layout with the name
+     */
+    public WindowLayout findLayout(String name, String fingerprint) {
+        Map<String, WindowLayout> variants = ensureLoaded().get(name);
+        if (variants == null || variants.isEmpty()) {
+            return null;
+        }
+        WindowLayout exact = variants.get(fingerprint);
+        if (exact != null) {
+            return exact;
+        }
+        WindowLayout latest = null;
+        for (WindowLayout layout : variants.values()) {
+            latest = layout;
+        }
+        return latest;
+    }
+
+    /**
+     * Remove all variants of a saved layout.
+     *
+     * @return true if a layout with the name existed
+     */
+    public boolean removeLayout(String name) {
+        if (ensureLoaded().remove(name) == null) {
+            return false;
+        }
+        write();
+        return true;
+    }
+
+    private Map<String, Map<String, WindowLayout>> ensureLoaded() {
+        if (layouts == null) {
+            layouts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            Path file = getFile();
+            if (file != null && Files.isRegularFile(file)) {
+                try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                     JsonReader reader = new JsonReader(in)) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        Map<String, WindowLayout> variants = new LinkedHashMap<>();
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            WindowLayout layout = WindowLayoutJson.read(reader);
+                            variants.put(layout.fingerprint(), layout);
+                        }
+                        reader.endArray();
+                        layouts.put(name, variants);
+                    }
+                    reader.endObject();
+                    logger.debug("Loaded {} layouts from {}", layouts.size(), file);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Failed to load saved layouts from {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return layouts;
+    }
+
+    /**
+     * Write all layouts to a temporary file, then move it into place so that a failed
+     * write never leaves a truncated file behind.
+     */
+    private void write() {
+        Path file = getFile();
+        if (file == null) {
+            logger.warn("No QuPath user directory set, layouts will not be kept after QuPath closes");
+            return;
+        }
+        Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+                 JsonWriter writer = new JsonWriter(out)) {
+                writer.beginObject();
+                for (var entry : layouts.entrySet()) {
+                    writer.name(entry.getKey()).beginArray();
+                    for (WindowLayout layout : entry.getValue().values()) {
+                        WindowLayoutJson.write(writer, layout);
+                    }
+                    writer.endArray();
+                }
+                writer.endObject();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Failed to save layouts: {}", e.getMessage(), e);
+        }
+    }
+
+    private static Path getFile() {
+        Path directory = DialogPositionPreferences.getStorageDirectory();
+        return directory == null ? null : directory.resolve(FILE_NAME);
+    }
+}
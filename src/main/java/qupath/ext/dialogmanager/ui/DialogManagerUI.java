@@ -1,5 +1,8 @@
 package qupath.ext.dialogmanager.ui;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.collections.transformation.SortedList;
@@ -16,20 +19,32 @@ import javafx.scene.control.MenuItem;
 import javafx.scene.control.SelectionMode;
 import javafx.scene.control.Separator;
 import javafx.scene.control.SeparatorMenuItem;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TitledPane;
 import javafx.scene.control.Tooltip;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
-import javafx.stage.Screen;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import qupath.ext.dialogmanager.DialogManagerMetrics;
 import qupath.ext.dialogmanager.DialogPositionManager;
 import qupath.ext.dialogmanager.DialogPositionPreferences;
 import qupath.ext.dialogmanager.DialogState;
-
+import qupath.ext.dialogmanager.FxStallWatchdog;
+import qupath.ext.dialogmanager.ProjectLayoutProfiles;
+import qupath.ext.dialogmanager.ScreenTopology;
+import qupath.ext.dialogmanager.TitleNormalizer;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Comparator;
 
 /**
@@ -43,11 +58,16 @@ import java.util.Comparator;
  *   <li>Reset a dialog to default position</li>
  *   <li>Clear all saved positions</li>
  * </ul>
+ * A collapsible panel shows the {@link DialogManagerMetrics}, refreshed once a second
+ * while it is expanded and the window is showing, along with any callbacks reported by
+ * the {@link FxStallWatchdog}.
  */
 public class DialogManagerUI {
 
     private static final Logger logger = LoggerFactory.getLogger(DialogManagerUI.class);
 
+    private static final DateTimeFormatter STALL_TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
     private static Stage stage;
     private Label mainWindowStatus;
     private static DialogManagerUI instance;
@@ -55,6 +75,14 @@ public class DialogManagerUI {
     private final DialogPositionManager manager;
     private ListView<DialogState> dialogListView;
 
+    // Refreshes the metrics panel while it is visible
+    private TitledPane metricsPane;
+    private Timeline metricsRefresh;
+
+    // Stalls reported by the watchdog, and how many there had been when the list was filled
+    private ListView<FxStallWatchdog.Stall> stallList;
+    private long shownStallCount = -1;
+
     private DialogManagerUI() {
         this.manager = DialogPositionManager.getInstance();
     }
@@ -101,6 +129,15 @@ public class DialogManagerUI {
         Scene scene = new Scene(root, 500, 400);
         dialogStage.setScene(scene);
 
+        // Don't keep refreshing metrics for a hidden window
+        dialogStage.showingProperty().addListener((obs, wasShowing, isShowing) -> {
+            if (!isShowing) {
+                metricsRefresh.stop();
+            } else if (metricsPane.isExpanded()) {
+                metricsRefresh.play();
+            }
+        });
+
         return dialogStage;
     }
 
@@ -132,6 +169,16 @@ public class DialogManagerUI {
             manager.setVerboseLogging(verboseLogCheckbox.isSelected());
         });
 
+        // Per-project layouts checkbox
+        CheckBox projectProfilesCheckbox = new CheckBox("Separate dialog layout for each project");
+        projectProfilesCheckbox.setSelected(ProjectLayoutProfiles.getInstance().isEnabled());
+        projectProfilesCheckbox.setTooltip(new Tooltip(
+                "When enabled, each QuPath project remembers its own dialog positions.\n" +
+                "A project's layout is applied to open dialogs when the project is opened."));
+        projectProfilesCheckbox.setOnAction(e -> {
+            ProjectLayoutProfiles.getInstance().setEnabled(projectProfilesCheckbox.isSelected());
+        });
+
         // --- Main Window Position ---
         Label mainWindowLabel = new Label("QuPath Main Window");
         mainWindowLabel.setStyle("-fx-font-size: 11px; -fx-font-weight: bold;");
@@ -179,28 +226,219 @@ public class DialogManagerUI {
         HBox mainWindowBtnBox = new HBox(8, saveWindowBtn, restoreCheckbox);
         mainWindowBtnBox.setAlignment(Pos.CENTER_LEFT);
 
+        // --- Named layouts ---
+        Button saveLayoutBtn = new Button("Save Layout As...");
+        saveLayoutBtn.setTooltip(new Tooltip(
+                "Save the positions of the main window and all open dialogs\n"
+                        + "under a name, for the current screen configuration."));
+        saveLayoutBtn.setOnAction(e -> LayoutDialogs.promptToSaveLayout(topBox.getScene().getWindow()));
+
+        Button applyLayoutBtn = new Button("Apply Layout...");
+        applyLayoutBtn.setTooltip(new Tooltip(
+                "Move the main window and all open dialogs to a saved layout."));
+        applyLayoutBtn.setOnAction(e -> LayoutDialogs.promptToApplyLayout(topBox.getScene().getWindow()));
+
+        HBox layoutBtnBox = new HBox(8, saveLayoutBtn, applyLayoutBtn);
+        layoutBtnBox.setAlignment(Pos.CENTER_LEFT);
+
         // Screen info
         Label screenInfo = createScreenInfoLabel();
 
-        topBox.getChildren().addAll(descLabel, trackAllCheckbox, verboseLogCheckbox,
-                new Separator(), mainWindowLabel, mainWindowBtnBox, mainWindowStatus,
-                new Separator(), screenInfo);
+        topBox.getChildren().addAll(descLabel, trackAllCheckbox, verboseLogCheckbox, projectProfilesCheckbox,
+                new Separator(), mainWindowLabel, mainWindowBtnBox, mainWindowStatus, layoutBtnBox,
+                new Separator(), screenInfo, createTitleRulesPane(), createMetricsPane());
         return topBox;
     }
 
+    private TitledPane createMetricsPane() {
+        DialogManagerMetrics metrics = DialogManagerMetrics.getInstance();
+
+        Label summaryLabel = new Label();
+        summaryLabel.setWrapText(true);
+
+        Label metricsLabel = new Label();
+        metricsLabel.setStyle("-fx-font-family: monospace; -fx-font-size: 11px;");
+
+        Runnable update = () -> {
+            refreshStalls();
+            DialogManagerMetrics.TimerStats callbacks = metrics.getTimer(DialogManagerMetrics.Timer.FX_CALLBACKS);
+            summaryLabel.setText(String.format("FX thread: %.3f ms per callback on average, %.3f ms at most",
+                    callbacks.meanMillis(), callbacks.maxMillis()));
+            summaryLabel.setStyle(callbacks.meanMillis() < 1.0
+                    ? "-fx-font-size: 11px; -fx-text-fill: green;"
+                    : "-fx-font-size: 11px; -fx-text-fill: #c00;");
+            metricsLabel.setText(metrics.summarize().strip());
+        };
+
+        metricsRefresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> update.run()));
+        metricsRefresh.setCycleCount(Animation.INDEFINITE);
+
+        Button resetMetricsBtn = new Button("Reset");
+        resetMetricsBtn.setTooltip(new Tooltip("Set all counters and timers back to zero"));
+        resetMetricsBtn.setOnAction(e -> {
+            metrics.reset();
+            update.run();
+        });
+
+        Button logMetricsBtn = new Button("Write to Log");
+        logMetricsBtn.setTooltip(new Tooltip("Write the current values to the QuPath log, e.g. for a bug report"));
+        logMetricsBtn.setOnAction(e -> logger.info("Dialog manager metrics:\n{}", metrics.summarize()));
+
+        HBox metricsBtnBox = new HBox(8, resetMetricsBtn, logMetricsBtn);
+        metricsBtnBox.setAlignment(Pos.CENTER_LEFT);
+
+        metricsPane = new TitledPane("Performance",
+                new VBox(6, summaryLabel, metricsLabel, metricsBtnBox, new Separator(), createStallBox()));
+        metricsPane.setExpanded(false);
+        metricsPane.setAnimated(false);
+        metricsPane.expandedProperty().addListener((obs, wasExpanded, isExpanded) -> {
+            if (isExpanded) {
+                update.run();
+                metricsRefresh.play();
+            } else {
+                metricsRefresh.stop();
+            }
+        });
+        return metricsPane;
+    }
+
+    /**
+     * Create the controls for the FX thread stall watchdog.
+     */
+    private VBox createStallBox() {
+        FxStallWatchdog watchdog = FxStallWatchdog.getInstance();
+
+        CheckBox watchdogCheckbox = new CheckBox("Report callbacks that hold up the FX thread for over");
+        watchdogCheckbox.setSelected(watchdog.isEnabled());
+        watchdogCheckbox.setTooltip(new Tooltip(
+                "When enabled, any dialog manager callback that runs for longer than the budget\n" +
+                "is logged and listed below, with a snapshot of the FX thread's stack."));
+        watchdogCheckbox.setOnAction(e ->
+                DialogPositionPreferences.setStallWatchdogEnabled(watchdogCheckbox.isSelected()));
+
+        Spinner<Integer> budgetSpinner = new Spinner<>(1, 1000, watchdog.getBudgetMillis());
+        budgetSpinner.setEditable(true);
+        budgetSpinner.setPrefWidth(80);
+        budgetSpinner.valueProperty().addListener((obs, oldValue, newValue) -> {
+            if (newValue != null) {
+                DialogPositionPreferences.setStallBudgetMillis(newValue);
+            }
+        });
+
+        HBox watchdogBox = new HBox(6, watchdogCheckbox, budgetSpinner, new Label("ms"));
+        watchdogBox.setAlignment(Pos.CENTER_LEFT);
+
+        stallList = new ListView<>();
+        stallList.setPrefHeight(100);
+        stallList.setPlaceholder(new Label("No stalls reported"));
+        stallList.setCellFactory(lv -> new ListCell<>() {
+            @Override
+            protected void updateItem(FxStallWatchdog.Stall stall, boolean empty) {
+                super.updateItem(stall, empty);
+                if (empty || stall == null) {
+                    setText(null);
+                } else {
+                    LocalTime time = LocalTime.ofInstant(Instant.ofEpochMilli(stall.timestamp()), ZoneId.systemDefault());
+                    setText(String.format("%s  %s  %.1f ms",
+                            STALL_TIME_FORMAT.format(time), stall.callback(), stall.durationMillis()));
+                }
+            }
+        });
+
+        TextArea stackArea = new TextArea();
+        stackArea.setEditable(false);
+        stackArea.setPrefRowCount(6);
+        stackArea.setStyle("-fx-font-family: monospace; -fx-font-size: 11px;");
+        stallList.getSelectionModel().selectedItemProperty().addListener((obs, oldStall, newStall) ->
+                stackArea.setText(newStall == null ? "" : newStall.describe()));
+
+        Button clearStallsBtn = new Button("Clear");
+        clearStallsBtn.setTooltip(new Tooltip("Forget the stalls reported so far"));
+        clearStallsBtn.setOnAction(e -> {
+            watchdog.clear();
+            refreshStalls();
+        });
+
+        Button logStallsBtn = new Button("Write to Log");
+        logStallsBtn.setTooltip(new Tooltip("Write the stalls and their stacks to the QuPath log"));
+        logStallsBtn.setOnAction(e -> watchdog.getStalls().forEach(stall ->
+                logger.info("FX thread stall at {}: {}", Instant.ofEpochMilli(stall.timestamp()), stall.describe())));
+
+        HBox stallBtnBox = new HBox(8, clearStallsBtn, logStallsBtn);
+        stallBtnBox.setAlignment(Pos.CENTER_LEFT);
+
+        return new VBox(6, watchdogBox, stallList, stackArea, stallBtnBox);
+    }
+
+    private void refreshStalls() {
+        // Only replace the list when there are new stalls, so the selection is kept
+        FxStallWatchdog watchdog = FxStallWatchdog.getInstance();
+        long count = watchdog.getStallCount();
+        if (count != shownStallCount) {
+            shownStallCount = count;
+            // Most recent first
+            stallList.getItems().setAll(watchdog.getStalls().reversed());
+        }
+    }
+
+    private TitledPane createTitleRulesPane() {
+        TextArea rulesArea = new TextArea(manager.getTitleNormalizer().getText());
+        rulesArea.setPrefRowCount(5);
+        rulesArea.setStyle("-fx-font-family: monospace; -fx-font-size: 11px;");
+        rulesArea.setTooltip(new Tooltip(
+                "One regular expression per line. The first rule matching a window title is used:\n"
+                        + "  pattern => replacement   replaces the match (use $1 for groups)\n"
+                        + "  pattern                  removes the match\n"
+                        + "Lines starting with # are ignored."));
+
+        Label rulesStatus = new Label();
+        rulesStatus.setStyle("-fx-font-size: 10px; -fx-text-fill: #666;");
+        rulesStatus.setWrapText(true);
+
+        Button applyRulesBtn = new Button("Apply");
+        applyRulesBtn.setOnAction(e -> {
+            TitleNormalizer normalizer = manager.setTitleRules(rulesArea.getText());
+            if (normalizer.getErrors().isEmpty()) {
+                rulesStatus.setText(String.format("Using %d rule%s.",
+                        normalizer.getRuleCount(), normalizer.getRuleCount() == 1 ? "" : "s"));
+                rulesStatus.setStyle("-fx-font-size: 10px; -fx-text-fill: green;");
+            } else {
+                rulesStatus.setText("Skipped invalid rules: " + String.join("; ", normalizer.getErrors()));
+                rulesStatus.setStyle("-fx-font-size: 10px; -fx-text-fill: #c00;");
+            }
+        });
+
+        Button defaultRulesBtn = new Button("Defaults");
+        defaultRulesBtn.setOnAction(e -> rulesArea.setText(TitleNormalizer.DEFAULT_RULES));
+
+        HBox rulesBtnBox = new HBox(8, applyRulesBtn, defaultRulesBtn, rulesStatus);
+        rulesBtnBox.setAlignment(Pos.CENTER_LEFT);
+
+        Label rulesDesc = new Label(
+                "Dialogs whose titles include an image or file name are matched by these rules, "
+                        + "so they keep one position instead of one per image.");
+        rulesDesc.setWrapText(true);
+        rulesDesc.setStyle("-fx-font-size: 11px; -fx-text-fill: #666;");
+
+        TitledPane pane = new TitledPane("Window title rules", new VBox(6, rulesDesc, rulesArea, rulesBtnBox));
+        pane.setExpanded(false);
+        pane.setAnimated(false);
+        return pane;
+    }
+
     private Label createScreenInfoLabel() {
-        int screenCount = Screen.getScreens().size();
+        ScreenTopology topology = ScreenTopology.current();
+        int screenCount = topology.size();
         String screenText = String.format("Detected %d screen%s", screenCount, screenCount == 1 ? "" : "s");
 
         StringBuilder sb = new StringBuilder(screenText);
-        for (int i = 0; i < Screen.getScreens().size(); i++) {
-            Screen screen = Screen.getScreens().get(i);
-            var bounds = screen.getVisualBounds();
+        for (int i = 0; i < screenCount; i++) {
+            var bounds = topology.getVisualBounds(i);
             sb.append(String.format("\n  Screen %d: %.0fx%.0f at (%.0f, %.0f)%s",
                     i + 1,
                     bounds.getWidth(), bounds.getHeight(),
                     bounds.getMinX(), bounds.getMinY(),
-                    screen == Screen.getPrimary() ? " [Primary]" : ""));
+                    i == topology.getPrimaryIndex() ? " [Primary]" : ""));
         }
 
         Label label = new Label(screenText);
@@ -340,7 +578,8 @@ public class DialogManagerUI {
         clearAllBtn.setStyle("-fx-text-fill: #c00;");
         clearAllBtn.setOnAction(e -> {
             DialogPositionPreferences.clearAll();
-            manager.getDialogStates().clear();
+            manager.clearDialogStates();
+            manager.clearScreenLayouts();
             logger.info("Cleared all saved dialog positions");
         });
 
@@ -417,8 +656,9 @@ public class DialogManagerUI {
 
             // Add warning if scale has changed
             if (state.hasValidScaleFactors()) {
-                Screen primary = Screen.getPrimary();
-                if (state.hasScaleChanged(primary.getOutputScaleX(), primary.getOutputScaleY())) {
+                ScreenTopology topology = ScreenTopology.current();
+                int primary = topology.getPrimaryIndex();
+                if (state.hasScaleChanged(topology.getScaleX(primary), topology.getScaleY(primary))) {
                     sb.append("\n\n[!] Scale factor differs from current screen");
                 }
             }
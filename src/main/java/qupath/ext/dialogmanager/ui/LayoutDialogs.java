@@ -0,0 +1,55 @@
+package qupath.ext.dialogmanager.ui;
+
+import javafx.scene.control.ChoiceDialog;
+import javafx.scene.control.TextInputDialog;
+import javafx.stage.Window;
+import qupath.ext.dialogmanager.WorkspaceLayouts;
+
+import java.util.List;
+
+/**
+ * Prompts for saving and applying named dialog layouts.
+ */
+public final class LayoutDialogs {
+
+    private LayoutDialogs() {
+        // Utility class - no instantiation
+    }
+
+    /**
+     * Ask for a name and save the current layout under it.
+     *
+     * @param owner The owner window for the prompt, or null
+     */
+    public static void promptToSaveLayout(Window owner) {
+        List<String> names = WorkspaceLayouts.getInstance().getLayoutNames();
+        TextInputDialog dialog = new TextInputDialog(names.isEmpty() ? "" : names.get(0));
+        dialog.initOwner(owner);
+        dialog.setTitle("Save Dialog Layout");
+        dialog.setHeaderText("Save the positions of the main window and all open dialogs.\n"
+                + "Saving with an existing name replaces that layout for the current screens.");
+        dialog.setContentText("Layout name:");
+        dialog.showAndWait()
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .ifPresent(name -> WorkspaceLayouts.getInstance().saveLayout(name));
+    }
+
+    /**
+     * Ask for a saved layout and apply it to the open windows.
+     *
+     * @param owner The owner window for the prompt, or null
+     */
+    public static void promptToApplyLayout(Window owner) {
+        List<String> names = WorkspaceLayouts.getInstance().getLayoutNames();
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(names.isEmpty() ? null : names.get(0), names);
+        dialog.initOwner(owner);
+        dialog.setTitle("Apply Dialog Layout");
+        dialog.setHeaderText(names.isEmpty()
+                ? "No layouts have been saved yet."
+                : "Move the main window and all open dialogs to a saved layout.");
+        dialog.setContentText("Layout:");
+        dialog.showAndWait()
+                .ifPresent(name -> WorkspaceLayouts.getInstance().applyLayout(name));
+    }
+}
@@ -0,0 +1,54 @@
+package qupath.ext.dialogmanager;
+
+import javafx.stage.Modality;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that the JFR events in {@link DialogManagerEvents} are recorded with their fields.
+ */
+class DialogManagerEventsTest {
+
+    @AfterAll
+    static void tearDown() {
+        DialogPositionPreferences.setStore(DialogStateStore.inMemory());
+    }
+
+    @Test
+    void saveAllIsRecordedWithEntryCount(@TempDir Path directory) throws IOException {
+        DialogPositionPreferences.setStore(DialogStateStore.inMemory());
+        Map<String, DialogState> states = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            String windowId = "Dialog " + i;
+            states.put(windowId, new DialogState(windowId, windowId, 10 * i, 20 * i, 300, 200,
+                    Modality.NONE, false, 0, 1.0, 1.0));
+        }
+
+        Path file = directory.resolve("saveAll.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(DialogManagerEvents.SaveAll.class).withoutThreshold();
+            recording.start();
+            DialogPositionPreferences.saveAll(states);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("qupath.dialogmanager.SaveAll"))
+                .toList();
+        assertEquals(1, events.size());
+        assertEquals(3, events.get(0).getInt("entryCount"));
+    }
+}
@@ -0,0 +1,63 @@
+package qupath.ext.dialogmanager;
+
+import javafx.stage.Modality;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link DialogManagerMetrics}. The metrics are a singleton, so each test resets them first.
+ */
+class DialogManagerMetricsTest {
+
+    @Test
+    void timersAccumulateCountTotalAndMax() {
+        DialogManagerMetrics metrics = DialogManagerMetrics.getInstance();
+        metrics.reset();
+
+        metrics.record(DialogManagerMetrics.Timer.FLUSH, 1_000_000);
+        metrics.record(DialogManagerMetrics.Timer.FLUSH, 3_000_000);
+
+        DialogManagerMetrics.TimerStats stats = metrics.getTimer(DialogManagerMetrics.Timer.FLUSH);
+        assertEquals(2, stats.count());
+        assertEquals(4_000_000, stats.totalNanos());
+        assertEquals(3.0, stats.maxMillis(), 1e-9);
+        assertEquals(2.0, stats.meanMillis(), 1e-9);
+        assertEquals(0, metrics.getTimer(DialogManagerMetrics.Timer.SAVE_ALL).count());
+    }
+
+    @Test
+    void resetClearsCountersAndTimers() {
+        DialogManagerMetrics metrics = DialogManagerMetrics.getInstance();
+        metrics.reset();
+        metrics.increment(DialogManagerMetrics.Counter.EVICTIONS);
+        metrics.add(DialogManagerMetrics.Counter.SERIALIZED_BYTES, 100);
+        metrics.record(DialogManagerMetrics.Timer.LOAD_ALL, 500);
+
+        metrics.reset();
+
+        assertEquals(0, metrics.getCount(DialogManagerMetrics.Counter.EVICTIONS));
+        assertEquals(0, metrics.getCount(DialogManagerMetrics.Counter.SERIALIZED_BYTES));
+        assertEquals(new DialogManagerMetrics.TimerStats(0, 0, 0), metrics.getTimer(DialogManagerMetrics.Timer.LOAD_ALL));
+    }
+
+    @Test
+    void journalWritesCountSerializedBytes(@TempDir Path directory) throws IOException {
+        DialogManagerMetrics metrics = DialogManagerMetrics.getInstance();
+        metrics.reset();
+
+        try (FileDialogStateStore store = FileDialogStateStore.open(directory, Map::of, false)) {
+            store.put(new DialogState("Brightness & contrast", "Brightness & contrast", 10, 20, 300, 400,
+                    Modality.NONE, false, 0, 1.0, 1.0));
+            store.flush();
+        }
+
+        assertTrue(metrics.getCount(DialogManagerMetrics.Counter.SERIALIZED_BYTES) > 0);
+    }
+}
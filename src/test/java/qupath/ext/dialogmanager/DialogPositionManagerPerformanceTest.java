@@ -0,0 +1,237 @@
+package qupath.ext.dialogmanager;
+
+import javafx.scene.Scene;
+import javafx.scene.layout.Pane;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link DialogPositionManager} against {@value #WINDOW_COUNT} synthetic windows on
+ * a synthetic pair of screens, and checks what tracking them costs.
+ * <p>
+ * The same open, move and close cycle is timed before the manager is installed and
+ * afterwards; the difference, divided by the number of windows, is the manager's
+ * overhead per window, and must stay within {@link #overheadBudgetMillis()}. Timings
+ * are the best of several rounds, so that a single slow round on a busy machine doesn't
+ * fail the build.
+ * <p>
+ * Separately, the store is wrapped to count full scans: handling a window event must
+ * not read every saved position, however fast that happens to be on this machine.
+ */
+class DialogPositionManagerPerformanceTest {
+
+    private static final int WINDOW_COUNT = 500;
+    private static final int ROUNDS = 3;
+
+    // Overhead allowed per window for a whole open, move and close cycle
+    private static final String BUDGET_PROPERTY = "dialogmanager.test.overheadBudgetMillis";
+    private static final double DEFAULT_BUDGET_MILLIS = 1.0;
+
+    private static CountingStore store;
+    private static Timings baseline;
+    private static DialogPositionManager manager;
+
+    /**
+     * Time to open, move and close all windows, in nanoseconds.
+     */
+    private record Timings(long open, long move, long close) {
+
+        long total() {
+            return open + move + close;
+        }
+
+        Timings min(Timings other) {
+            return other == null ? this : new Timings(
+                    Math.min(open, other.open), Math.min(move, other.move), Math.min(close, other.close));
+        }
+    }
+
+    @BeforeAll
+    static void setUp() throws InterruptedException {
+        FxTestSupport.startFx();
+        ScreenTopology.update(TestScreens.sideBySide(2));
+
+        store = new CountingStore(DialogStateStore.inMemory());
+        for (int i = 0; i < WINDOW_COUNT; i++) {
+            // Every other window has a saved position, so both paths are exercised
+            if (i % 2 == 0) {
+                store.put(new DialogState(title(i), title(i), 100 + (i % 20) * 80, 100 + (i / 20) * 30,
+                        300, 200, Modality.NONE, false, 0, 1.0, 1.0));
+            }
+        }
+        DialogPositionPreferences.setStore(store);
+
+        // Without the manager
+        baseline = bestOf(ROUNDS);
+
+        manager = FxTestSupport.startManager();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        DialogPositionPreferences.setStore(DialogStateStore.inMemory());
+    }
+
+    @Test
+    void overheadPerWindowIsWithinBudget() {
+        Timings tracked = bestOf(ROUNDS);
+
+        double budget = overheadBudgetMillis();
+        double perWindow = (tracked.total() - baseline.total()) / 1e6 / WINDOW_COUNT;
+        String details = String.format(
+                "%d windows, best of %d: open %.1f ms (baseline %.1f), move %.1f ms (baseline %.1f), close %.1f ms (baseline %.1f)",
+                WINDOW_COUNT, ROUNDS,
+                tracked.open() / 1e6, baseline.open() / 1e6,
+                tracked.move() / 1e6, baseline.move() / 1e6,
+                tracked.close() / 1e6, baseline.close() / 1e6);
+        assertTrue(perWindow <= budget, String.format(
+                "Overhead of %.3f ms per window exceeds the budget of %.3f ms; %s", perWindow, budget, details));
+    }
+
+    @Test
+    void windowEventsDoNotScanTheStore() {
+        store.resetCounts();
+        runCycle();
+
+        // Opening looks up each window once; nothing reads the whole store
+        assertEquals(0, store.snapshots.get(), "Full store reads during open, move and close");
+        assertTrue(store.gets.get() <= WINDOW_COUNT,
+                "Expected at most one lookup per window but there were " + store.gets.get());
+    }
+
+    @Test
+    void closedWindowsAreSavedWhereTheyWereMoved() {
+        runCycle();
+
+        Map<String, DialogState> saved = store.snapshot();
+        for (int i = 0; i < WINDOW_COUNT; i++) {
+            DialogState state = saved.get(title(i));
+            assertNotNull(state, "No saved position for " + title(i));
+            assertEquals(movedX(i), state.x(), "x of " + title(i));
+            assertEquals(movedY(i), state.y(), "y of " + title(i));
+        }
+        long open = FxTestSupport.callOnFx(() -> manager.getDialogStates().stream()
+                .filter(DialogState::isCurrentlyOpen)
+                .count());
+        assertEquals(0, open, "Windows still listed as open after closing");
+    }
+
+    private static double overheadBudgetMillis() {
+        String value = System.getProperty(BUDGET_PROPERTY);
+        return value == null ? DEFAULT_BUDGET_MILLIS : Double.parseDouble(value);
+    }
+
+    private static Timings bestOf(int rounds) {
+        // One round to warm up, which isn't counted
+        runCycle();
+        Timings best = null;
+        for (int i = 0; i < rounds; i++) {
+            best = runCycle().min(best);
+        }
+        return best;
+    }
+
+    /**
+     * Open every window, move each one, then close them all. Each phase is timed until
+     * the FX thread has also run the updates it queued.
+     */
+    private static Timings runCycle() {
+        List<Stage> stages = new ArrayList<>(WINDOW_COUNT);
+        long open = timeOnFx(() -> {
+            for (int i = 0; i < WINDOW_COUNT; i++) {
+                Stage stage = new Stage();
+                stage.setTitle(title(i));
+                stage.setScene(new Scene(new Pane(), 300, 200));
+                stage.show();
+                stages.add(stage);
+            }
+        });
+        long move = timeOnFx(() -> {
+            for (int i = 0; i < stages.size(); i++) {
+                Stage stage = stages.get(i);
+                stage.setX(movedX(i));
+                stage.setY(movedY(i));
+            }
+        });
+        long close = timeOnFx(() -> stages.forEach(Stage::close));
+        return new Timings(open, move, close);
+    }
+
+    private static long timeOnFx(Runnable task) {
+        long start = System.nanoTime();
+        FxTestSupport.runOnFx(task);
+        FxTestSupport.waitForFx();
+        return System.nanoTime() - start;
+    }
+
+    private static String title(int index) {
+        return String.format("Synthetic dialog %03d", index);
+    }
+
+    // Spread over both screens, each window fully visible
+    private static double movedX(int index) {
+        return 50 + (index % 25) * 150;
+    }
+
+    private static double movedY(int index) {
+        return 50 + (index / 25) * 40;
+    }
+
+    /**
+     * Counts reads of a store.
+     */
+    private static final class CountingStore implements DialogStateStore {
+
+        private final DialogStateStore delegate;
+        private final AtomicInteger gets = new AtomicInteger();
+        private final AtomicInteger snapshots = new AtomicInteger();
+
+        CountingStore(DialogStateStore delegate) {
+            this.delegate = delegate;
+        }
+
+        void resetCounts() {
+            gets.set(0);
+            snapshots.set(0);
+        }
+
+        @Override
+        public DialogState get(String windowId) {
+            gets.incrementAndGet();
+            return delegate.get(windowId);
+        }
+
+        @Override
+        public void put(DialogState state) {
+            delegate.put(state);
+        }
+
+        @Override
+        public boolean remove(String windowId) {
+            return delegate.remove(windowId);
+        }
+
+        @Override
+        public Map<String, DialogState> snapshot() {
+            snapshots.incrementAndGet();
+            return delegate.snapshot();
+        }
+
+        @Override
+        public void flush() {
+            delegate.flush();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package qupath.ext.dialogmanager;
+
+import javafx.stage.Modality;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips through the stored JSON and binary encodings of dialog states.
+ */
+class DialogStateCodecTest {
+
+    @Test
+    void jsonRoundTripPreservesStatesAndOrder() throws IOException {
+        Map<String, DialogState> states = createStates(50);
+        String json = PreferencesDialogStateStore.toJsonWithinLimit(states, Integer.MAX_VALUE, new ArrayList<>());
+
+        Map<String, DialogState> decoded = DialogStateJsonReader.read(json);
+
+        assertStatesEqual(states, decoded);
+    }
+
+    @Test
+    void binaryRoundTripPreservesStatesAndOrder() {
+        Map<String, DialogState> states = createStates(50);
+        String encoded = DialogStateBinaryCodec.encode(states);
+
+        assertTrue(DialogStateBinaryCodec.isEncoded(encoded));
+        Map<String, DialogState> decoded = DialogStateBinaryCodec.decode(encoded);
+
+        assertStatesEqual(states, decoded);
+    }
+
+    @Test
+    void scalesOffTheCommonTableRoundTripExactlyInBothEncodings() throws IOException {
+        Map<String, DialogState> states = new LinkedHashMap<>();
+        double[] scales = {1.125, 1.75, 4.0 / 3, 0.9, 2.5};
+        for (int i = 0; i < scales.length; i++) {
+            String windowId = "Dialog " + i;
+            states.put(windowId, new DialogState(windowId, windowId, 10 * i, 20 * i, 300, 200,
+                    Modality.NONE, false, i, scales[i], scales[scales.length - 1 - i]));
+        }
+
+        Map<String, DialogState> fromBinary = DialogStateBinaryCodec.decode(DialogStateBinaryCodec.encode(states));
+        Map<String, DialogState> fromJson = DialogStateJsonReader.read(
+                PreferencesDialogStateStore.toJsonWithinLimit(states, Integer.MAX_VALUE, new ArrayList<>()));
+
+        for (DialogState state : states.values()) {
+            assertEquals(state.savedScaleX(), fromBinary.get(state.windowId()).savedScaleX(), 0.0);
+            assertEquals(state.savedScaleY(), fromBinary.get(state.windowId()).savedScaleY(), 0.0);
+            assertEquals(state.savedScaleX(), fromJson.get(state.windowId()).savedScaleX(), 0.0);
+            assertEquals(state.savedScaleY(), fromJson.get(state.windowId()).savedScaleY(), 0.0);
+        }
+    }
+
+    @Test
+    void titlesThatDifferFromTheWindowIdRoundTripInBothEncodings() throws IOException {
+        Map<String, DialogState> states = createStates(5);
+        states.put("Detections", new DialogState("Detections", "Detections: image 1.svs", 10, 20, 300, 200,
+                Modality.NONE, false, 0, 1.0, 1.0));
+
+        assertStatesEqual(states, DialogStateBinaryCodec.decode(DialogStateBinaryCodec.encode(states)));
+        assertStatesEqual(states, DialogStateJsonReader.read(
+                PreferencesDialogStateStore.toJsonWithinLimit(states, Integer.MAX_VALUE, new ArrayList<>())));
+    }
+
+    @Test
+    void binaryDecodesVersion1() {
+        // One word, one scale (screen 1 at 1.25 x 1.5 in hundredths), one entry at (10, -20) 300 x 200
+        byte[] bytes = {1, 6, 'D', 'i', 'a', 'l', 'o', 'g', 1, 1, 125, (byte) 150, 1, 1, 1, 0, 20, 39,
+                (byte) 0xAC, 2, (byte) 0xC8, 1, 0};
+        String encoded = DialogStateBinaryCodec.PREFIX_V1 + Base64.getEncoder().withoutPadding().encodeToString(bytes);
+
+        Map<String, DialogState> decoded = DialogStateBinaryCodec.decode(encoded);
+
+        assertStatesEqual(Map.of("Dialog", new DialogState("Dialog", "Dialog", 10, -20, 300, 200,
+                Modality.NONE, false, 1, 1.25, 1.5)), decoded);
+    }
+
+    @Test
+    void binaryIsSmallerThanJson() {
+        Map<String, DialogState> states = createStates(200);
+        String json = PreferencesDialogStateStore.toJsonWithinLimit(states, Integer.MAX_VALUE, new ArrayList<>());
+        String binary = DialogStateBinaryCodec.encode(states);
+
+        assertTrue(binary.length() < json.length(),
+                "Binary " + binary.length() + " chars, JSON " + json.length() + " chars");
+    }
+
+    @Test
+    void jsonEvictsOldestEntriesToFitLimit() throws IOException {
+        Map<String, DialogState> states = createStates(100);
+        List<String> evicted = new ArrayList<>();
+        String json = PreferencesDialogStateStore.toJsonWithinLimit(states, 2000, evicted);
+
+        assertTrue(json.length() <= 2000);
+        assertTrue(!evicted.isEmpty());
+        List<String> keys = List.copyOf(states.keySet());
+        assertEquals(keys.subList(0, evicted.size()), evicted);
+        assertEquals(keys.subList(evicted.size(), keys.size()), List.copyOf(DialogStateJsonReader.read(json).keySet()));
+    }
+
+    @Test
+    void binaryEvictsOldestEntriesToFitLimit() {
+        Map<String, DialogState> states = createStates(100);
+        List<String> evicted = new ArrayList<>();
+        String encoded = DialogStateBinaryCodec.encodeWithinLimit(states, 500, evicted);
+
+        assertTrue(encoded.length() <= 500);
+        assertTrue(!evicted.isEmpty());
+        List<String> keys = List.copyOf(states.keySet());
+        assertEquals(keys.subList(0, evicted.size()), evicted);
+        assertEquals(keys.subList(evicted.size(), keys.size()), List.copyOf(DialogStateBinaryCodec.decode(encoded).keySet()));
+    }
+
+    @Test
+    void jsonReaderAcceptsLegacyKeysWithCompactKeysWinning() throws IOException {
+        String json = """
+                {"Legacy":{"x":10,"y":20,"width":300,"height":200,"modality":"WINDOW_MODAL",\
+                "screenIndex":1,"scaleX":1.5,"scaleY":1.5,"title":"Legacy title"},\
+                "Both":{"width":1,"w":400,"h":250,"height":2}}""";
+
+        Map<String, DialogState> decoded = DialogStateJsonReader.read(json);
+
+        assertStateEquals(new DialogState("Legacy", "Legacy title", 10, 20, 300, 200,
+                Modality.WINDOW_MODAL, false, 1, 1.5, 1.5), decoded.get("Legacy"));
+        assertEquals(400, decoded.get("Both").width());
+        assertEquals(250, decoded.get("Both").height());
+    }
+
+    @Test
+    void jsonReaderSkipsInvalidEntries() throws IOException {
+        String json = """
+                {"Good":{"x":1,"y":2,"w":3,"h":4},"Bad value":{"x":"left"},"Not an object":5}""";
+
+        Map<String, DialogState> decoded = DialogStateJsonReader.read(json);
+
+        assertEquals(List.of("Good"), List.copyOf(decoded.keySet()));
+    }
+
+    @Test
+    void jsonReaderRejectsMalformedJson() {
+        assertThrows(IOException.class, () -> DialogStateJsonReader.read("{\"Broken\":{\"x\":1"));
+    }
+
+    // DialogState.equals only compares windowIds, so compare every component
+    private static void assertStatesEqual(Map<String, DialogState> expected, Map<String, DialogState> actual) {
+        assertEquals(List.copyOf(expected.keySet()), List.copyOf(actual.keySet()));
+        for (DialogState state : expected.values()) {
+            assertStateEquals(state, actual.get(state.windowId()));
+        }
+    }
+
+    private static void assertStateEquals(DialogState expected, DialogState actual) {
+        assertEquals(expected.windowId(), actual.windowId());
+        assertEquals(expected.title(), actual.title());
+        assertEquals(expected.modality(), actual.modality());
+        assertEquals(expected.screenIndex(), actual.screenIndex());
+        assertEquals(expected.savedScaleX(), actual.savedScaleX(), 1e-9);
+        assertEquals(expected.savedScaleY(), actual.savedScaleY(), 1e-9);
+        assertEquals(expected.x(), actual.x(), 1e-9);
+        assertEquals(expected.y(), actual.y(), 1e-9);
+        assertEquals(expected.width(), actual.width(), 1e-9);
+        assertEquals(expected.height(), actual.height(), 1e-9);
+    }
+
+    /**
+     * States as they come back from storage: whole-unit geometry, no modality,
+     * the windowId as the title.
+     */
+    private static Map<String, DialogState> createStates(int count) {
+        Map<String, DialogState> states = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String windowId = i % 3 == 0 ? "Measurement table " + i : "Dialog " + i + " settings";
+            int screen = i % 3;
+            double scale = screen == 0 ? 1.0 : 1.25;
+            states.put(windowId, new DialogState(windowId, windowId, i * 37 - 500, i * 11,
+                    200 + i, 100 + i, Modality.NONE, false, screen, scale, scale));
+        }
+        return states;
+    }
+}
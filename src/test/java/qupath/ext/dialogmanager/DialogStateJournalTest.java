@@ -0,0 +1,231 @@
+package qupath.ext.dialogmanager;
+
+import javafx.stage.Modality;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link DialogStateJournal} and {@link FileDialogStateStore}, including replay
+ * of journals left behind by a crash.
+ */
+class DialogStateJournalTest {
+
+    // Magic and version at the start of every journal file
+    private static final int HEADER_SIZE = 8;
+
+    @Test
+    void replayRestoresLatestStatesInSaveOrder(@TempDir Path directory) throws IOException {
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, new LinkedHashMap<>())) {
+            assertTrue(journal.isNew());
+            journal.put(state("A", 10));
+            journal.put(state("B", 20));
+            journal.put(titled("C", "C: image.svs", 30));
+            journal.remove("B");
+            journal.put(state("A", 40));
+        }
+
+        Map<String, DialogState> replayed = new LinkedHashMap<>();
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, replayed)) {
+            assertFalse(journal.isNew());
+            assertEquals(5, journal.getRecordCount());
+        }
+        assertEquals(List.of("C", "A"), List.copyOf(replayed.keySet()));
+        assertEquals(40, replayed.get("A").x());
+        assertEquals("C: image.svs", replayed.get("C").title());
+        assertEquals("A", replayed.get("A").title());
+    }
+
+    @Test
+    void tornTailIsDiscardedAndOverwritten(@TempDir Path directory) throws IOException {
+        int end;
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, new LinkedHashMap<>())) {
+            journal.put(state("A", 10));
+            journal.put(state("B", 20));
+            end = journal.getPosition();
+        }
+        // A record that was being written when the process died: length and part of the body
+        Path file = onlyJournalFile(directory);
+        ByteBuffer torn = ByteBuffer.allocate(12).putInt(64).putInt(0x01020304).putInt(0x05060708).flip();
+        writeAt(file, end, torn);
+
+        Map<String, DialogState> replayed = new LinkedHashMap<>();
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, replayed)) {
+            assertEquals(2, journal.getRecordCount());
+            assertEquals(end, journal.getPosition());
+            journal.put(state("C", 30));
+        }
+        assertEquals(List.of("A", "B"), List.copyOf(replayed.keySet()));
+
+        replayed.clear();
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, replayed)) {
+            assertEquals(3, journal.getRecordCount());
+        }
+        assertEquals(List.of("A", "B", "C"), List.copyOf(replayed.keySet()));
+    }
+
+    @Test
+    void replayStopsAtRecordWithBadChecksum(@TempDir Path directory) throws IOException {
+        int secondRecord;
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, new LinkedHashMap<>())) {
+            journal.put(state("A", 10));
+            secondRecord = journal.getPosition();
+            journal.put(state("B", 20));
+            journal.put(state("C", 30));
+        }
+        // Flip a byte of the second record's body (after its length and opcode)
+        Path file = onlyJournalFile(directory);
+        ByteBuffer b = readAt(file, secondRecord + 5, 1);
+        writeAt(file, secondRecord + 5, ByteBuffer.wrap(new byte[]{(byte) ~b.get(0)}));
+
+        Map<String, DialogState> replayed = new LinkedHashMap<>();
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, replayed)) {
+            assertEquals(1, journal.getRecordCount());
+        }
+        assertEquals(List.of("A"), List.copyOf(replayed.keySet()));
+    }
+
+    @Test
+    void recordIsNotReplayedUntilItsLengthIsWritten(@TempDir Path directory) throws IOException {
+        int secondRecord;
+        int end;
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, new LinkedHashMap<>())) {
+            journal.put(state("A", 10));
+            secondRecord = journal.getPosition();
+            journal.put(state("B", 20));
+            end = journal.getPosition();
+        }
+        // Body and checksum are complete, but the length was never written
+        Path file = onlyJournalFile(directory);
+        writeAt(file, secondRecord, ByteBuffer.allocate(4));
+
+        Map<String, DialogState> replayed = new LinkedHashMap<>();
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, replayed)) {
+            assertEquals(1, journal.getRecordCount());
+            assertEquals(secondRecord, journal.getPosition());
+        }
+        assertEquals(List.of("A"), List.copyOf(replayed.keySet()));
+        // The orphaned body and checksum are cleared
+        ByteBuffer rest = readAt(file, secondRecord, end - secondRecord);
+        while (rest.hasRemaining()) {
+            assertEquals(0, rest.get());
+        }
+    }
+
+    @Test
+    void compactionMovesToNextGenerationAndRemovesOldFiles(@TempDir Path directory) throws IOException {
+        Map<String, DialogState> live = new LinkedHashMap<>();
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, new LinkedHashMap<>())) {
+            for (int i = 0; i < 300; i++) {
+                DialogState state = state("Dialog " + (i % 10), i);
+                journal.put(state);
+                live.remove(state.windowId());
+                live.put(state.windowId(), state);
+            }
+            assertTrue(journal.needsCompaction(live.size()));
+            journal.compact(live);
+            assertEquals(live.size(), journal.getRecordCount());
+            assertEquals(directory.resolve("positions-1.journal"), journal.getFile());
+        }
+        assertEquals(List.of(directory.resolve("positions-1.journal")), journalFiles(directory));
+
+        // Left behind by crashes: an older generation and an unfinished compaction
+        Files.write(directory.resolve("positions-0.journal"), new byte[64]);
+        Files.write(directory.resolve("positions-2.journal.tmp"), new byte[64]);
+
+        Map<String, DialogState> replayed = new LinkedHashMap<>();
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, replayed)) {
+            assertFalse(journal.isNew());
+            assertEquals(directory.resolve("positions-1.journal"), journal.getFile());
+        }
+        assertEquals(List.copyOf(live.keySet()), List.copyOf(replayed.keySet()));
+        assertEquals(299, replayed.get("Dialog 9").x());
+        assertEquals(List.of(directory.resolve("positions-1.journal")), journalFiles(directory));
+    }
+
+    @Test
+    void fileWithoutHeaderIsNew(@TempDir Path directory) throws IOException {
+        Files.write(directory.resolve("positions-0.journal"), new byte[1024]);
+
+        try (DialogStateJournal journal = DialogStateJournal.open(directory, new LinkedHashMap<>())) {
+            assertTrue(journal.isNew());
+        }
+    }
+
+    @Test
+    void fileStoreMigratesInitialStatesOnlyWhenNew(@TempDir Path directory) throws IOException {
+        Map<String, DialogState> initial = Map.of("A", state("A", 10));
+        try (FileDialogStateStore store = FileDialogStateStore.open(directory, () -> initial, false)) {
+            assertEquals(10, store.get("A").x());
+            store.put(state("B", 20));
+        }
+
+        Map<String, DialogState> other = Map.of("Z", state("Z", 99));
+        try (FileDialogStateStore store = FileDialogStateStore.open(directory, () -> other, false)) {
+            assertEquals(List.of("A", "B"), List.copyOf(store.snapshot().keySet()));
+        }
+
+        try (FileDialogStateStore store = FileDialogStateStore.open(directory, () -> other, true)) {
+            assertEquals(List.of("Z"), List.copyOf(store.snapshot().keySet()));
+        }
+    }
+
+    @Test
+    void fileStoreMigratesIntoHeaderlessJournal(@TempDir Path directory) throws IOException {
+        Files.write(directory.resolve("positions-0.journal"), new byte[1024]);
+
+        Map<String, DialogState> initial = Map.of("A", state("A", 10));
+        try (FileDialogStateStore store = FileDialogStateStore.open(directory, () -> initial, false)) {
+            assertEquals(List.of("A"), List.copyOf(store.snapshot().keySet()));
+        }
+    }
+
+    private static DialogState state(String windowId, double x) {
+        return titled(windowId, windowId, x);
+    }
+
+    private static DialogState titled(String windowId, String title, double x) {
+        return new DialogState(windowId, title, x, 20, 300, 200, Modality.NONE, false, 0, 1.0, 1.0);
+    }
+
+    private static Path onlyJournalFile(Path directory) throws IOException {
+        List<Path> files = journalFiles(directory);
+        assertEquals(1, files.size());
+        return files.get(0);
+    }
+
+    private static List<Path> journalFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static void writeAt(Path file, int offset, ByteBuffer bytes) throws IOException {
+        assertTrue(offset >= HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(bytes, offset);
+        }
+    }
+
+    private static ByteBuffer readAt(Path file, int offset, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(bytes, offset);
+        }
+        return bytes.flip();
+    }
+}
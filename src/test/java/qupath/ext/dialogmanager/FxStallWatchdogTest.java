@@ -0,0 +1,70 @@
+package qupath.ext.dialogmanager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link FxStallWatchdog}. Callbacks are run on the test thread, which stands in
+ * for the FX application thread.
+ */
+class FxStallWatchdogTest {
+
+    @AfterEach
+    void tearDown() {
+        FxStallWatchdog watchdog = FxStallWatchdog.getInstance();
+        watchdog.setEnabled(false);
+        watchdog.setBudgetMillis(FxStallWatchdog.DEFAULT_BUDGET_MILLIS);
+        watchdog.clear();
+    }
+
+    @Test
+    void slowCallbackIsReportedWithStackWhileRunning() throws InterruptedException {
+        FxStallWatchdog watchdog = FxStallWatchdog.getInstance();
+        watchdog.setBudgetMillis(5);
+        watchdog.setEnabled(true);
+
+        runCallback(watchdog, "Slow callback", 100);
+
+        List<FxStallWatchdog.Stall> stalls = watchdog.getStalls();
+        assertEquals(1, stalls.size());
+        FxStallWatchdog.Stall stall = stalls.get(0);
+        assertEquals("Slow callback", stall.callback());
+        assertTrue(stall.durationMillis() >= 100);
+        assertTrue(stall.sampled(), "Stack should be taken while the callback was running");
+        assertTrue(stall.stack().stream().anyMatch(e -> e.getMethodName().equals("runCallback")),
+                "Stack should include the callback: " + stall.describe());
+    }
+
+    @Test
+    void callbacksWithinBudgetAreNotReported() throws InterruptedException {
+        FxStallWatchdog watchdog = FxStallWatchdog.getInstance();
+        watchdog.setBudgetMillis(1000);
+        watchdog.setEnabled(true);
+
+        runCallback(watchdog, "Fast callback", 0);
+
+        assertEquals(0, watchdog.getStallCount());
+    }
+
+    @Test
+    void nothingIsReportedWhileDisabled() throws InterruptedException {
+        FxStallWatchdog watchdog = FxStallWatchdog.getInstance();
+        watchdog.setBudgetMillis(1);
+
+        runCallback(watchdog, "Slow callback", 20);
+
+        assertEquals(0, watchdog.getStallCount());
+    }
+
+    private static void runCallback(FxStallWatchdog watchdog, String name, long millis) throws InterruptedException {
+        long start = System.nanoTime();
+        watchdog.enter(name, start);
+        Thread.sleep(millis);
+        watchdog.exit(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,116 @@
+package qupath.ext.dialogmanager;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs code on the JavaFX application thread for tests.
+ * <p>
+ * The build runs tests with the headless Monocle platform and software rendering (see
+ * {@code build.gradle.kts}), so stages can be shown without a display. Screen geometry
+ * still comes from Monocle's single virtual screen, so tests that care about screens
+ * install a synthetic {@link ScreenTopology} from {@link TestScreens} instead.
+ */
+final class FxTestSupport {
+
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private static boolean started;
+    private static DialogPositionManager manager;
+
+    private FxTestSupport() {
+        // Utility class - no instantiation
+    }
+
+    /**
+     * Start the JavaFX toolkit if it is not already running.
+     * It keeps running when the last window closes, so it can be shared by all tests.
+     */
+    static synchronized void startFx() throws InterruptedException {
+        if (started) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            Platform.startup(latch::countDown);
+        } catch (IllegalStateException e) {
+            // Already started elsewhere in this JVM
+            latch.countDown();
+        }
+        if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("JavaFX toolkit did not start");
+        }
+        Platform.setImplicitExit(false);
+        started = true;
+    }
+
+    /**
+     * Get the manager, initializing it without a main window the first time.
+     * It listens for windows from then on, so it is shared by all tests.
+     */
+    static synchronized DialogPositionManager startManager() {
+        if (manager == null) {
+            manager = callOnFx(() -> {
+                DialogPositionManager m = DialogPositionManager.getInstance();
+                m.initialize(null);
+                return m;
+            });
+        }
+        return manager;
+    }
+
+    /**
+     * Run a task on the FX application thread and wait for it to finish.
+     */
+    static void runOnFx(Runnable task) {
+        callOnFx(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Compute a value on the FX application thread and wait for it.
+     * Exceptions thrown by the task are rethrown on the calling thread.
+     */
+    static <T> T callOnFx(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the FX thread", e);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out waiting for the FX thread", e);
+        }
+    }
+
+    /**
+     * Wait until everything already queued on the FX application thread has run,
+     * including updates queued with {@code Platform.runLater} by the tasks before it.
+     */
+    static void waitForFx() {
+        runOnFx(() -> { });
+    }
+}
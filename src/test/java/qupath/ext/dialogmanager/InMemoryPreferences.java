@@ -0,0 +1,67 @@
+package qupath.ext.dialogmanager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.prefs.AbstractPreferences;
+
+/**
+ * A preference node held entirely in memory, so that tests and benchmarks leave no trace
+ * in the user's real preferences, and benchmarks measure the store and its encoding
+ * rather than the platform's preference backend.
+ *
+ * @see InMemoryPreferencesFactory
+ */
+class InMemoryPreferences extends AbstractPreferences {
+
+    private final Map<String, String> values = new HashMap<>();
+    private final Map<String, InMemoryPreferences> children = new HashMap<>();
+
+    InMemoryPreferences(InMemoryPreferences parent, String name) {
+        super(parent, name);
+    }
+
+    @Override
+    protected void putSpi(String key, String value) {
+        values.put(key, value);
+    }
+
+    @Override
+    protected String getSpi(String key) {
+        return values.get(key);
+    }
+
+    @Override
+    protected void removeSpi(String key) {
+        values.remove(key);
+    }
+
+    @Override
+    protected void removeNodeSpi() {
+        values.clear();
+    }
+
+    @Override
+    protected String[] keysSpi() {
+        return values.keySet().toArray(String[]::new);
+    }
+
+    @Override
+    protected String[] childrenNamesSpi() {
+        return children.keySet().toArray(String[]::new);
+    }
+
+    @Override
+    protected AbstractPreferences childSpi(String name) {
+        return children.computeIfAbsent(name, n -> new InMemoryPreferences(this, n));
+    }
+
+    @Override
+    protected void syncSpi() {
+        // Nothing to sync
+    }
+
+    @Override
+    protected void flushSpi() {
+        // Nothing to flush
+    }
+}
@@ -0,0 +1,25 @@
+package qupath.ext.dialogmanager;
+
+import java.util.prefs.Preferences;
+import java.util.prefs.PreferencesFactory;
+
+/**
+ * Supplies {@link InMemoryPreferences} roots. Installed for the test and benchmark JVMs with
+ * {@code -Djava.util.prefs.PreferencesFactory=qupath.ext.dialogmanager.InMemoryPreferencesFactory}
+ * (see {@code build.gradle.kts}).
+ */
+public final class InMemoryPreferencesFactory implements PreferencesFactory {
+
+    private static final Preferences USER_ROOT = new InMemoryPreferences(null, "");
+    private static final Preferences SYSTEM_ROOT = new InMemoryPreferences(null, "");
+
+    @Override
+    public Preferences userRoot() {
+        return USER_ROOT;
+    }
+
+    @Override
+    public Preferences systemRoot() {
+        return SYSTEM_ROOT;
+    }
+}
@@ -0,0 +1,45 @@
+package qupath.ext.dialogmanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link PersistenceScheduler}.
+ */
+class PersistenceSchedulerTest {
+
+    @Test
+    void requestDuringFlushSchedulesAnotherFlush() throws InterruptedException {
+        CountDownLatch firstFlushStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstFlush = new CountDownLatch(1);
+        Semaphore flushes = new Semaphore(0);
+        AtomicInteger count = new AtomicInteger();
+
+        PersistenceScheduler scheduler = new PersistenceScheduler(() -> {
+            if (count.incrementAndGet() == 1) {
+                firstFlushStarted.countDown();
+                try {
+                    releaseFirstFlush.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            flushes.release();
+        }, () -> 0);
+
+        scheduler.schedule();
+        assertTrue(firstFlushStarted.await(5, TimeUnit.SECONDS));
+        // Arrives after the first flush has taken its snapshot
+        scheduler.schedule();
+        releaseFirstFlush.countDown();
+
+        assertTrue(flushes.tryAcquire(2, 5, TimeUnit.SECONDS),
+                "The request made during a flush was never flushed");
+    }
+}
@@ -0,0 +1,70 @@
+package qupath.ext.dialogmanager;
+
+import javafx.stage.Modality;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link PreferencesDialogStateStore}, against preferences held in memory.
+ */
+class PreferencesDialogStateStoreTest {
+
+    @Test
+    void statesSurviveReopening() {
+        InMemoryPreferences preferences = new InMemoryPreferences(null, "");
+        PreferencesDialogStateStore store = new PreferencesDialogStateStore(preferences);
+        store.put(state("A", 10));
+        store.put(state("B", 20));
+        store.remove("B");
+        store.flush();
+
+        PreferencesDialogStateStore reopened = new PreferencesDialogStateStore(preferences);
+        assertEquals(10, reopened.get("A").x());
+        assertNull(reopened.get("B"));
+    }
+
+    @Test
+    void shardThatFailsToWriteIsRetriedByNextFlush() {
+        FailingPreferences preferences = new FailingPreferences();
+        PreferencesDialogStateStore store = new PreferencesDialogStateStore(preferences);
+        store.put(state("A", 10));
+
+        preferences.failNextPut = true;
+        store.flush();
+        assertNull(new PreferencesDialogStateStore(preferences).get("A"), "Write should have failed");
+
+        // Nothing has changed since, but the shard is still dirty
+        store.flush();
+        DialogState persisted = new PreferencesDialogStateStore(preferences).get("A");
+        assertNotNull(persisted, "Shard was not written again after the failure");
+        assertEquals(10, persisted.x());
+    }
+
+    private static DialogState state(String windowId, double x) {
+        return new DialogState(windowId, windowId, x, 20, 300, 200, Modality.NONE, false, 0, 1.0, 1.0);
+    }
+
+    /**
+     * Preferences whose backing store fails on request.
+     */
+    private static final class FailingPreferences extends InMemoryPreferences {
+
+        private boolean failNextPut;
+
+        FailingPreferences() {
+            super(null, "");
+        }
+
+        @Override
+        protected void putSpi(String key, String value) {
+            if (failNextPut) {
+                failNextPut = false;
+                throw new IllegalStateException("Preferences backing store unavailable");
+            }
+            super.putSpi(key, value);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package qupath.ext.dialogmanager;
+
+import javafx.scene.Scene;
+import javafx.scene.layout.Pane;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Checks that {@link DialogPositionManager} puts windows back where they were when a
+ * screen configuration returns, even though the OS moves them while screens come and go.
+ */
+class ScreenLayoutRestoreTest {
+
+    private static final String TITLE = "Screen layout dialog";
+
+    private static final ScreenTopology TWO_SCREENS = TestScreens.sideBySide(2);
+    private static final ScreenTopology ONE_SCREEN = TestScreens.sideBySide(1);
+
+    // On the second screen, which is removed when undocking
+    private static final double DOCKED_X = 2200;
+    // Where the OS puts the window when its screen goes, and when it comes back
+    private static final double UNDOCKED_X = 200;
+    private static final double FORCED_X = 300;
+
+    private static DialogPositionManager manager;
+
+    @BeforeAll
+    static void setUp() throws InterruptedException {
+        FxTestSupport.startFx();
+        DialogPositionPreferences.setStore(DialogStateStore.inMemory());
+        manager = FxTestSupport.startManager();
+        FxTestSupport.runOnFx(() -> ScreenTopology.update(TWO_SCREENS));
+        FxTestSupport.waitForFx();
+        manager.clearScreenLayouts();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        DialogPositionPreferences.setStore(DialogStateStore.inMemory());
+    }
+
+    @Test
+    void movesWhileScreensChangeDoNotOverwriteTheLayoutToRestore() {
+        Stage stage = FxTestSupport.callOnFx(() -> {
+            Stage s = new Stage();
+            s.setTitle(TITLE);
+            s.setScene(new Scene(new Pane(), 300, 200));
+            s.show();
+            s.setX(DOCKED_X);
+            s.setY(100);
+            return s;
+        });
+        waitForUpdates();
+        DialogState docked = recorded(TWO_SCREENS);
+        assertEquals(DOCKED_X, docked.x());
+
+        // Undock: the window is moved off the removed screen in the same pulse as the change
+        FxTestSupport.runOnFx(() -> {
+            stage.setX(UNDOCKED_X);
+            ScreenTopology.update(ONE_SCREEN);
+            stage.setY(120);
+        });
+        waitForUpdates();
+        assertEquals(docked, recorded(TWO_SCREENS), "Layout for the previous configuration changed");
+        assertEquals(UNDOCKED_X, recorded(ONE_SCREEN).x());
+
+        // Dock again: the OS moves the window once more before the change settles
+        FxTestSupport.runOnFx(() -> {
+            stage.setX(FORCED_X);
+            ScreenTopology.update(TWO_SCREENS);
+        });
+        waitForUpdates();
+        double restoredX = FxTestSupport.callOnFx(stage::getX);
+        assertEquals(DOCKED_X, restoredX, "Window not restored for the docked configuration");
+        assertEquals(UNDOCKED_X, recorded(ONE_SCREEN).x(), "Layout for the previous configuration changed");
+        assertEquals(DOCKED_X, recorded(TWO_SCREENS).x());
+
+        FxTestSupport.runOnFx(stage::close);
+    }
+
+    private static DialogState recorded(ScreenTopology topology) {
+        WindowLayout layout = manager.getScreenLayout(topology.getFingerprint());
+        assertNotNull(layout, "No layout recorded for " + topology.getFingerprint());
+        DialogState state = layout.windows().get(TITLE);
+        assertNotNull(state, "No position recorded for " + TITLE);
+        return state;
+    }
+
+    // Position updates are queued for the next pulse, and restoring a layout queues more
+    private static void waitForUpdates() {
+        FxTestSupport.waitForFx();
+        FxTestSupport.waitForFx();
+    }
+}
@@ -0,0 +1,147 @@
+package qupath.ext.dialogmanager;
+
+import javafx.geometry.Rectangle2D;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link ScreenSpatialIndex} against a linear scan over every screen, which is
+ * how these queries were answered before the index existed.
+ */
+class ScreenSpatialIndexTest {
+
+    private static final int QUERIES = 2000;
+
+    @Test
+    void singleScreen() {
+        ScreenSpatialIndex index = new ScreenSpatialIndex(new Rectangle2D[] {
+                new Rectangle2D(0, 0, 1920, 1040)});
+
+        assertEquals(0, index.screenAt(0, 0));
+        assertEquals(0, index.screenAt(1920, 1040), "Edges are inclusive");
+        assertEquals(-1, index.screenAt(1921, 500));
+        assertEquals(-1, index.bestScreenFor(2000, 100, 300, 200));
+        assertEquals(0, index.bestScreenFor(-100, -100, 300, 200));
+        assertTrue(index.isSufficientlyVisible(1800, 900, 400, 400, 100));
+        assertFalse(index.isSufficientlyVisible(1850, 900, 400, 400, 100));
+    }
+
+    @Test
+    void lowestIndexWinsTies() {
+        // Listed out of order, so sorted and screen order differ
+        ScreenSpatialIndex index = new ScreenSpatialIndex(new Rectangle2D[] {
+                new Rectangle2D(1920, 0, 1920, 1080),
+                new Rectangle2D(0, 0, 1920, 1080)});
+
+        assertEquals(0, index.screenAt(1920, 500), "Point on the shared edge");
+        assertEquals(0, index.maxOverlapScreen(1820, 100, 200, 200), "Equal overlap with both");
+        assertEquals(1, index.bestScreenFor(1900, 100, 400, 200), "Top-left corner wins over larger overlap");
+    }
+
+    @Test
+    void matchesLinearScanOnRandomLayouts() {
+        Random random = new Random(7);
+        for (int layout = 0; layout < 50; layout++) {
+            Rectangle2D[] screens = randomLayout(random, 1 + random.nextInt(8));
+            ScreenSpatialIndex index = new ScreenSpatialIndex(screens);
+            for (int q = 0; q < QUERIES; q++) {
+                double x = random.nextInt(12000) - 6000;
+                double y = random.nextInt(6000) - 3000;
+                double w = 1 + random.nextInt(2500);
+                double h = 1 + random.nextInt(1500);
+                String query = String.format("layout %d, rect (%.0f, %.0f, %.0f, %.0f)", layout, x, y, w, h);
+
+                assertEquals(scanScreenAt(screens, x, y), index.screenAt(x, y), query);
+                assertEquals(scanMaxOverlap(screens, x, y, w, h), index.maxOverlapScreen(x, y, w, h), query);
+                int owner = scanScreenAt(screens, x, y);
+                assertEquals(owner >= 0 ? owner : scanMaxOverlap(screens, x, y, w, h),
+                        index.bestScreenFor(x, y, w, h), query);
+                assertEquals(scanVisibleArea(screens, x, y, w, h), index.visibleArea(x, y, w, h), 1e-6, query);
+                assertEquals(scanSufficientlyVisible(screens, x, y, w, h, 100),
+                        index.isSufficientlyVisible(x, y, w, h, 100), query);
+            }
+        }
+    }
+
+    /**
+     * Create non-overlapping screens of mixed sizes in up to three rows, some at negative
+     * coordinates, as when a secondary monitor is left of or above the primary.
+     */
+    private static Rectangle2D[] randomLayout(Random random, int count) {
+        double[][] sizes = {{1920, 1080}, {2560, 1440}, {1280, 1024}, {3840, 2160}, {1080, 1920}};
+        List<Rectangle2D> screens = new ArrayList<>();
+        double x = -random.nextInt(3) * 1920;
+        double y = -2200;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && random.nextInt(3) == 0) {
+                // Start a new row below, leaving a gap for the tallest screen
+                x = -random.nextInt(3) * 1920;
+                y += 2200;
+            }
+            double[] size = sizes[random.nextInt(sizes.length)];
+            screens.add(new Rectangle2D(x, y, size[0], size[1]));
+            // Sometimes leave a gap between screens
+            x += size[0] + (random.nextBoolean() ? 0 : random.nextInt(400));
+        }
+        // Screen order doesn't follow position
+        Collections.shuffle(screens, random);
+        return screens.toArray(Rectangle2D[]::new);
+    }
+
+    private static int scanScreenAt(Rectangle2D[] screens, double x, double y) {
+        for (int i = 0; i < screens.length; i++) {
+            Rectangle2D s = screens[i];
+            if (x >= s.getMinX() && x <= s.getMaxX() && y >= s.getMinY() && y <= s.getMaxY()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int scanMaxOverlap(Rectangle2D[] screens, double x, double y, double w, double h) {
+        int best = -1;
+        double bestArea = 0;
+        for (int i = 0; i < screens.length; i++) {
+            double area = overlap(screens[i], x, y, w, h);
+            if (area > bestArea) {
+                best = i;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    private static double scanVisibleArea(Rectangle2D[] screens, double x, double y, double w, double h) {
+        double total = 0;
+        for (Rectangle2D screen : screens) {
+            total += overlap(screen, x, y, w, h);
+        }
+        return total;
+    }
+
+    private static boolean scanSufficientlyVisible(Rectangle2D[] screens, double x, double y, double w, double h,
+                                                   double minVisible) {
+        for (Rectangle2D s : screens) {
+            double ow = Math.min(x + w, s.getMaxX()) - Math.max(x, s.getMinX());
+            double oh = Math.min(y + h, s.getMaxY()) - Math.max(y, s.getMinY());
+            if (ow >= minVisible && oh >= minVisible) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double overlap(Rectangle2D s, double x, double y, double w, double h) {
+        double ow = Math.max(0, Math.min(x + w, s.getMaxX()) - Math.max(x, s.getMinX()));
+        double oh = Math.max(0, Math.min(y + h, s.getMaxY()) - Math.max(y, s.getMinY()));
+        return ow * oh;
+    }
+}
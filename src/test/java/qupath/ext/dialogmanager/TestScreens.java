@@ -0,0 +1,45 @@
+package qupath.ext.dialogmanager;
+
+import javafx.geometry.Rectangle2D;
+
+/**
+ * Synthetic screen configurations, standing in for {@code Screen.getScreens()} in tests
+ * and benchmarks that run without a display.
+ */
+final class TestScreens {
+
+    static final int SCREEN_WIDTH = 1920;
+    static final int SCREEN_HEIGHT = 1080;
+
+    // Height of a task bar, subtracted from the visual bounds of each screen
+    private static final int TASK_BAR_HEIGHT = 40;
+
+    private TestScreens() {
+        // Utility class - no instantiation
+    }
+
+    /**
+     * Create a row of screens side by side, alternating between 100% and 150% scaling,
+     * with the first screen as the primary.
+     */
+    static ScreenTopology sideBySide(int screenCount) {
+        Rectangle2D[] bounds = new Rectangle2D[screenCount];
+        Rectangle2D[] visualBounds = new Rectangle2D[screenCount];
+        double[] scaleX = new double[screenCount];
+        double[] scaleY = new double[screenCount];
+        for (int i = 0; i < screenCount; i++) {
+            bounds[i] = new Rectangle2D(i * SCREEN_WIDTH, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+            visualBounds[i] = new Rectangle2D(i * SCREEN_WIDTH, 0, SCREEN_WIDTH, SCREEN_HEIGHT - TASK_BAR_HEIGHT);
+            scaleX[i] = scaleOf(i);
+            scaleY[i] = scaleX[i];
+        }
+        return ScreenTopology.of(bounds, visualBounds, scaleX, scaleY, 0);
+    }
+
+    /**
+     * Get the output scale of a screen created by {@link #sideBySide(int)}.
+     */
+    static double scaleOf(int screenIndex) {
+        return screenIndex % 2 == 0 ? 1.0 : 1.5;
+    }
+}
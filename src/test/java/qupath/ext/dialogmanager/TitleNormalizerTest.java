@@ -0,0 +1,64 @@
+package qupath.ext.dialogmanager;
+
+import javafx.stage.Modality;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link TitleNormalizer} and the migration of positions saved before a rule applied.
+ */
+class TitleNormalizerTest {
+
+    @AfterAll
+    static void tearDown() {
+        DialogPositionPreferences.setStore(DialogStateStore.inMemory());
+    }
+
+    @Test
+    void defaultRulesNormalizeDynamicTitles() {
+        TitleNormalizer normalizer = TitleNormalizer.parse(TitleNormalizer.DEFAULT_RULES);
+
+        assertEquals("Detections", normalizer.normalize("Detections: image.svs"));
+        assertEquals("Script editor", normalizer.normalize("Script editor - script.groovy"));
+        assertEquals("Brightness & contrast", normalizer.normalize("Brightness & contrast"));
+    }
+
+    @Test
+    void savedPositionsMoveToNormalizedWindowIds() {
+        DialogStateStore store = DialogStateStore.inMemory();
+        store.put(state("Detections: a.svs", 10));
+        store.put(state("Detections: b.svs", 20));
+        store.put(state("Script editor - script.groovy", 30));
+        store.put(state("Brightness & contrast", 40));
+        store.put(state("Untitled (BorderPane, NONE) - owner.txt", 50));
+        DialogPositionPreferences.setStore(store);
+
+        Map<String, String> migrated = DialogPositionPreferences.migrateWindowIds(
+                TitleNormalizer.parse(TitleNormalizer.DEFAULT_RULES));
+
+        assertEquals(Map.of(
+                "Detections: a.svs", "Detections",
+                "Detections: b.svs", "Detections",
+                "Script editor - script.groovy", "Script editor"), migrated);
+        assertEquals(Set.of("Detections", "Script editor", "Brightness & contrast",
+                "Untitled (BorderPane, NONE) - owner.txt"), store.snapshot().keySet());
+        // The first position found is kept, with its original title
+        assertEquals(10, store.get("Detections").x());
+        assertEquals("Detections: a.svs", store.get("Detections").title());
+        assertNull(store.get("Detections: a.svs"));
+
+        // Running again changes nothing
+        assertEquals(Map.of(), DialogPositionPreferences.migrateWindowIds(
+                TitleNormalizer.parse(TitleNormalizer.DEFAULT_RULES)));
+    }
+
+    private static DialogState state(String title, double x) {
+        return new DialogState(title, title, x, 20, 300, 200, Modality.NONE, false, 0, 1.0, 1.0);
+    }
+}
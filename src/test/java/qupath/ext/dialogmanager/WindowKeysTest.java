@@ -0,0 +1,25 @@
+package qupath.ext.dialogmanager;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link WindowKeys}.
+ */
+class WindowKeysTest {
+
+    @Test
+    void onlyFallbackIdsOfEarlierVersionsAreLegacyKeys() {
+        assertTrue(WindowKeys.isLegacyFallbackKey("Stage@926214965"));
+        assertTrue(WindowKeys.isLegacyFallbackKey("@926214965"));
+
+        assertFalse(WindowKeys.isLegacyFallbackKey("Cells@2"));
+        assertFalse(WindowKeys.isLegacyFallbackKey("Export@2024"));
+        assertFalse(WindowKeys.isLegacyFallbackKey("Stage@"));
+        assertFalse(WindowKeys.isLegacyFallbackKey("Stage@12345678901"));
+        assertFalse(WindowKeys.isLegacyFallbackKey("Untitled (BorderPane, NONE)"));
+        assertFalse(WindowKeys.isLegacyFallbackKey(null));
+    }
+}